@@ -0,0 +1,24 @@
+#!/bin/bash
+
+########################################
+############# CSCI 2951-O ##############
+########################################
+E_BADARGS=65
+if [ -z "$JMH_CP" ]
+then
+	echo "Usage: JMH_CP=<jmh classpath> `basename $0` [jmh options]"
+	echo "Description:"
+	echo -e "\t Compiles the solver with the JMH benchmarks in bench/ and runs them on the instances in input/."
+	echo -e "\t JMH_CP must hold jmh-core, jmh-generator-annprocess and their dependencies (jopt-simple, commons-math3)."
+	echo -e "\t Any arguments are passed on to JMH, e.g. -p instance=386_47_1 or a benchmark name pattern."
+	exit $E_BADARGS
+fi
+
+buildDir=bench/build
+rm -rf $buildDir
+mkdir -p $buildDir
+
+javac -nowarn -d $buildDir -cp "$JMH_CP:./ILOG.CP.jar:./cplex.jar" -processorpath "$JMH_CP" \
+	./src/solver/ls/*.java ./bench/solver/ls/*.java || exit 1
+
+java -cp "$buildDir:$JMH_CP:./ILOG.CP.jar:./cplex.jar" org.openjdk.jmh.Main "$@"
@@ -0,0 +1,131 @@
+package solver.ls;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Microbenchmarks of the solver's hot paths on every instance in input/.
+ *
+ * Each instance starts from its bin-packing feasible solution, so no CP is needed.
+ * The TSP benchmarks use the longest route of that solution. Run with bench.sh from
+ * the repository root.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotPathBenchmark {
+    @Param({ "16_5_1", "21_4_1", "30_4_1", "41_14_1", "45_4_1", "51_5_1", "76_8_2", "101_8_1",
+            "101_11_2", "121_7_1", "135_7_1", "151_15_1", "200_16_2", "241_22_1", "262_25_1", "386_47_1" })
+    public String instance;
+
+    private VRPInstance problem;
+    private Routes routes;
+    private VRPState vrpState;
+    private int[] route;
+    private TSPState tspState;
+    private TSPCache.Key cachedKey;
+
+    @Setup
+    public void setUp() {
+        problem = new VRPInstance("input/" + instance + ".vrp");
+        routes = new BinPacker(problem).getFeasible(Settings.packingNodeLimit).get().getPaths();
+        vrpState = new VRPState(problem, routes);
+
+        route = routes.get(0);
+        for (int bin = 1; bin < routes.size(); bin ++) {
+            if (routes.get(bin).length > route.length) {
+                route = routes.get(bin);
+            }
+        }
+        tspState = new TSPState(problem, route);
+
+        problem.tspCache.put(problem.tspCache.keyOf(route), tspState);
+        cachedKey = problem.tspCache.keyOf(route);
+    }
+
+    @Benchmark
+    public Double tspGetValue() {
+        return new TSPState(problem, route).getValue(Optional.empty());
+    }
+
+    @Benchmark
+    public void tspGetNeighbors(Blackhole blackhole) {
+        for (AbstractLocalSearchState<Double> neighbor : tspState.getNeighbors(false)) {
+            blackhole.consume(neighbor);
+        }
+    }
+
+    @Benchmark
+    public void vrpGetNeighborsIsValid(Blackhole blackhole) {
+        for (AbstractLocalSearchState<Double> neighbor : vrpState.getNeighbors(false)) {
+            blackhole.consume(neighbor.isValid());
+        }
+    }
+
+    @Benchmark
+    public TSPState tspGetInitial() {
+        return new TSPLocalSearch(problem, route).getInitial();
+    }
+
+    @Benchmark
+    public double solutionGetCost() {
+        return new Solution(problem, routes).getCost();
+    }
+
+    @Benchmark
+    public boolean solutionIsWellFormed() {
+        return new Solution(problem, routes).isWellFormed();
+    }
+
+    /**
+     * Handing elements out through a Neighborhood cursor, which replaced the
+     * thread-based Generator, against a plain loop over the same elements.
+     */
+    @Benchmark
+    public void neighborhoodHandoff(Blackhole blackhole) {
+        Neighborhood<Integer> cursor = new Neighborhood<Integer>() {
+            private int next = 0;
+
+            @Override
+            protected Integer advance() {
+                return next < route.length ? route[next ++] : null;
+            }
+        };
+        for (Integer loc : cursor) {
+            blackhole.consume(loc);
+        }
+    }
+
+    @Benchmark
+    public void plainLoopHandoff(Blackhole blackhole) {
+        for (int loc : route) {
+            blackhole.consume(loc);
+        }
+    }
+
+    @Benchmark
+    public TSPState tspCacheHit() {
+        return problem.tspCache.get(problem.tspCache.keyOf(route));
+    }
+
+    @Benchmark
+    public TSPState tspCacheLookupOnly() {
+        return problem.tspCache.get(cachedKey);
+    }
+}
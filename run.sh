@@ -24,5 +24,6 @@ export LD_LIBRARY_PATH=$LD_LIBRARY_PATH:"./x64_win64cpop;./x64_win64cplex"
 # add the solver jar to the classpath and run
 #java -ea -cp /gpfs/main/sys/shared/psfu/local/projects/cplex/CPLEX_Studio_Academic/12.3/x86_64/cpoptimizer/lib/ILOG.CP.jar/gpfs/main/sys/shared/psfu/local/projects/cplex/CPLEX_Studio_Academic/12.3/x86_64/cpoptimizer/lib/ILOG.CP.jar:/gpfs/main/sys/shared/psfu/local/projects/cplex/CPLEX_Studio_Academic/12.3/x86_64/cplex/lib/cplex.jar:src solver.ls.Main $input $args
 #java -ea -cp ./ILOG.jar:src solver.ls.Main $input $args
-java -ea -cp "./ILOG.CP.jar;./cplex.jar;src" solver.ls.Main $input $args
+# exec, so that SIGTERM from timeout reaches the JVM and it can report its best solution
+exec java -ea -cp "./ILOG.CP.jar;./cplex.jar;src" solver.ls.Main $input $args
 #java -cp "./cplex.jar;src" solver.ip.Main $input $args
\ No newline at end of file
@@ -40,8 +40,11 @@ do
 	echo "Running $f"
 	timeout $timeLimit ./run.sh $f $args > output.tmp
 	returnValue="$?"
+	lastLine=$(tail -1 output.tmp)
 	if [[ "$returnValue" = 0 ]]; then 						# Run is successful
 		cat output.tmp | tail -1 >> $logFile				# Record the last line as solution
+	elif [[ "$returnValue" = 124 && "$lastLine" == Instance:*Result:\ [0-9]* ]]; then	# Timed out, but printed its best solution on SIGTERM
+		cat output.tmp | tail -1 >> $logFile				# Record the last line as solution
 	else 																					# Run failed, record the instanceName with no solution
 		echo Error
 		instance=$(basename "$f")		
@@ -1,11 +1,45 @@
 package solver.ls;
 
-import javax.swing.text.html.Option;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
 
 abstract class AbstractLocalSearch<T extends Comparable<T>, State extends AbstractLocalSearchState<T>> {
+    // Smallest gain, relative to the value improved on, that counts as an improvement
+    private static final double MIN_RELATIVE_GAIN = 1e-9;
+
+    private boolean searchProcedural = Settings.lsSearchProcedural;
+    private Optional<Consumer<State>> onNewBest = Optional.empty();
+    private SplittableRandom rand = Rng.forWorker(0);
+
     abstract State getInitial();
 
+    public void setSearchProcedural(boolean searchProcedural) {
+        this.searchProcedural = searchProcedural;
+    }
+
+    /**
+     * The stream the search and its perturbations draw from.
+     */
+    public void setRandom(SplittableRandom rand) {
+        this.rand = rand;
+    }
+
+    /**
+     * Registers a callback for every state that improves on the best found so far.
+     */
+    public void setOnNewBest(Consumer<State> onNewBest) {
+        this.onNewBest = Optional.of(onNewBest);
+    }
+
     public State search(int maxDist) {
         return search(Optional.of(maxDist), Optional.empty());
     }
@@ -19,7 +53,7 @@ abstract class AbstractLocalSearch<T extends Comparable<T>, State extends Abstra
     }
 
     private State search(Optional<Integer> maxDist, Optional<Double> maxTime) {
-        if (Settings.lsSearchProcedural) {
+        if (searchProcedural) {
             return searchProcedural(maxDist, maxTime);
         } else {
             return searchRandom(maxDist, maxTime);
@@ -28,6 +62,7 @@ abstract class AbstractLocalSearch<T extends Comparable<T>, State extends Abstra
 
     private State searchRandom(Optional<Integer> maxDist, Optional<Double> maxTime) {
         State best = getInitial();
+        publishBest(best);
         State current = best;
 
         double probRandWalk = Settings.probRandWalk;
@@ -35,12 +70,12 @@ abstract class AbstractLocalSearch<T extends Comparable<T>, State extends Abstra
         Timer timer = new Timer();
         timer.start();
         int count = 0;
-        while ((!maxDist.isPresent() || count++ <= maxDist.get()) && (!maxTime.isPresent() || timer.getCurrentTime() < maxTime.get())) {
-            State next = (State) current.getRandom(Settings.rand.nextDouble() * Settings.randMaxDist);
+        while ((!maxDist.isPresent() || count++ <= maxDist.get()) && !isOutOfTime(timer, maxTime)) {
+            State next = (State) current.getRandom(rand.nextDouble() * Settings.randMaxDist, rand);
             if (lt(next, current)) {
                 current = next;
-                best = min(best, next);
-            } else if (Settings.rand.nextDouble() < probRandWalk) {
+                best = improveBest(best, next);
+            } else if (rand.nextDouble() < probRandWalk) {
                 probRandWalk *= Settings.probRandWalkFactor;
                 current = next;
             }
@@ -51,6 +86,7 @@ abstract class AbstractLocalSearch<T extends Comparable<T>, State extends Abstra
 
     private State searchProcedural(Optional<Integer> maxDist, Optional<Double> maxTime) {
         State best = getInitial();
+        publishBest(best);
         State current = best;
 
         double probRandWalk = Settings.probRandWalk;
@@ -60,43 +96,69 @@ abstract class AbstractLocalSearch<T extends Comparable<T>, State extends Abstra
         Timer timer = new Timer();
         timer.start();
         while (!maxDist.isPresent() || dist <= maxDist.get()) {
-            if (Settings.verbosity >= 3) {
+            if (Thread.currentThread().isInterrupted()) {
+                return min(current, best);
+            }
+            if (Log.enabled(3)) {
                 current.print();
             }
             // Take a random step
-            if (dist == 1 && (Settings.rand.nextDouble() < probRandWalk)) {
+            if (dist == 1 && (rand.nextDouble() < probRandWalk)) {
                 Settings.debug(3, "Random step! " + best.getProblem());
-                current = (State) current.getRandom(Settings.rand.nextDouble() * randMaxDist);
+                current = (State) current.getRandom(rand.nextDouble() * randMaxDist, rand);
                 randMaxDist *= Settings.probRandWalkFactor;
                 probRandWalk *= Settings.probRandWalkFactor;
                 continue;
             }
 
-            Optional<State> newCurrent = Optional.empty();
-            for (State neighbor : getValidNeighbors(current, dist)) {
-                if (best.getProblem().equals("VRP") && Settings.rand.nextDouble() < probRandWalk) {
-                    Settings.debug(3, "Random neighbor! " + best.getProblem());
-                    neighbor = (State) current.getRandom(Settings.rand.nextDouble() * Settings.randMaxDist);
+            if (Settings.lsScanThreads > 1) {
+                // Random neighbors are not mixed into parallel scans
+                AtomicBoolean timedOut = new AtomicBoolean(false);
+                Optional<State> newCurrent = scanInParallel(current, dist, timer, maxTime, timedOut);
+                if (newCurrent.isPresent()) {
+                    best = improveBest(best, newCurrent.get());
                 }
-                if (maxTime.isPresent() && timer.getCurrentTime() > maxTime.get()) {
+                if (timedOut.get()) {
                     current = newCurrent.orElse(current);
                     return min(current, best);
                 }
 
-                neighbor.getValueRemember(current.getValueRemember());
                 if (newCurrent.isPresent()) {
-                    newCurrent = Optional.of(min(newCurrent.get(), neighbor));
+                    current = newCurrent.get();
+                    dist = 1;
                 } else {
-                    if (lt(neighbor, current)) {
-                        newCurrent = Optional.of(neighbor);
-                        if (Settings.lsTakeFirst) {
-                            best = min(best, neighbor);
-                            break;
-                        }
-                    }
+                    dist += 1;
+                }
+                continue;
+            }
+
+            Optional<State> newCurrent = Optional.empty();
+            T currentValue = current.getValueRemember();
+            for (Move<T> move : getValidMoves(current, dist)) {
+                if (best.getProblem().equals("VRP") && rand.nextDouble() < probRandWalk) {
+                    Settings.debug(3, "Random neighbor! " + best.getProblem());
+                    move = Move.to(current.getRandom(rand.nextDouble() * Settings.randMaxDist, rand));
+                }
+                if (isOutOfTime(timer, maxTime)) {
+                    current = newCurrent.orElse(current);
+                    return min(current, best);
                 }
 
-                best = min(best, neighbor);
+                // Only neighbors that replace newCurrent are built; ties go to the later one.
+                // Best is never above current or newCurrent, so no other neighbor can improve it.
+                T value = move.getValueRemember(currentValue);
+                boolean replaces = newCurrent.isPresent()
+                        ? value.compareTo(newCurrent.get().getValueRemember()) <= 0
+                        : improves(value, currentValue);
+                if (!replaces) {
+                    continue;
+                }
+                State neighbor = (State) move.materialize();
+                newCurrent = Optional.of(neighbor);
+                best = improveBest(best, neighbor);
+                if (Settings.lsTakeFirst) {
+                    break;
+                }
             }
 
             if (newCurrent.isPresent()) {
@@ -110,50 +172,227 @@ abstract class AbstractLocalSearch<T extends Comparable<T>, State extends Abstra
         return best;
     }
 
+    /**
+     * Past maxTime, or interrupted by whoever runs the search, e.g. a batch deadline.
+     */
+    private boolean isOutOfTime(Timer timer, Optional<Double> maxTime) {
+        return (maxTime.isPresent() && timer.getCurrentTime() > maxTime.get())
+                || Thread.currentThread().isInterrupted();
+    }
+
     private boolean lt(State s1, State s2) {
-        return s1.getValueRemember().compareTo(s2.getValueRemember()) < 0;
+        return improves(s1.getValueRemember(), s2.getValueRemember());
+    }
+
+    /**
+     * Whether value is below reference by more than rounding error. Values summed in
+     * a different order, e.g. after a chain of moves that returns to the same state,
+     * can differ in their last bits and must not count as improvements.
+     */
+    private boolean improves(T value, T reference) {
+        if (value instanceof Double) {
+            double ref = (Double) reference;
+            return (Double) value < ref - MIN_RELATIVE_GAIN * Math.abs(ref);
+        }
+        return value.compareTo(reference) < 0;
     }
 
     private State min(State s1, State s2) {
         return lt(s1, s2) ? s1 : s2;
     }
 
-    private Generator<State> getNeighbors(State state, int dist) {
-        return new Generator<State>() {
+    private State improveBest(State best, State candidate) {
+        if (lt(candidate, best)) {
+            Metrics.count(Metrics.Counter.improvements);
+            publishBest(candidate);
+            return candidate;
+        }
+        return best;
+    }
+
+    private void publishBest(State best) {
+        onNewBest.ifPresent(listener -> listener.accept(best));
+    }
+
+    /**
+     * Moves to the neighbors of state at distance dist.
+     */
+    private Neighborhood<Move<T>> getMoves(State state, int dist) {
+        if (dist == 1) {
+            return state.getMoves(isImprovingOnly(dist), true);
+        }
+        AbstractLocalSearchState<T> working = state.copy();
+        return expand(working, working.getMoves(isImprovingOnly(dist), false), dist);
+    }
+
+    /**
+     * Moves can only be screened against the state they start from, i.e. at distance 1.
+     */
+    private boolean isImprovingOnly(int dist) {
+        return Settings.lsScreenMoves && dist == 1;
+    }
+
+    /**
+     * Last moves of chains of dist moves on working, whose first move comes from
+     * first. The earlier moves of a chain are applied to working in place while its
+     * last moves are handed out, and undone afterwards. Only the last moves have to
+     * lead to a valid state.
+     */
+    private Neighborhood<Move<T>> expand(AbstractLocalSearchState<T> working, Neighborhood<Move<T>> first,
+                                         int dist) {
+        if (dist == 1) {
+            return first;
+        }
+        // Depth-first walk over chains of dist moves, keeping one cursor per level
+        return new Neighborhood<Move<T>>() {
+            private final List<Neighborhood<Move<T>>> stack = new ArrayList<>();
+            private final List<Move<T>> applied = new ArrayList<>();
+
+            {
+                stack.add(first);
+            }
+
             @Override
-            protected void run() throws InterruptedException {
-                if (dist == 0) {
-                    this.yield(state);
-                    return;
-                }
+            protected Move<T> advance() {
+                while (!stack.isEmpty()) {
+                    Neighborhood<Move<T>> top = stack.get(stack.size() - 1);
+                    if (!top.hasNext()) {
+                        stack.remove(stack.size() - 1);
+                        if (!applied.isEmpty()) {
+                            applied.remove(applied.size() - 1).undo();
+                        }
+                        continue;
+                    }
 
-                for (Object swapObj : state.getNeighbors()) {
-                    State swapState = (State) swapObj;
-                    for (State neighbor : getNeighbors(swapState, dist - 1)) {
-                        this.yield(neighbor);
+                    Move<T> move = top.next();
+                    if (stack.size() == dist) {
+                        return move;
                     }
+                    move.apply();
+                    applied.add(move);
+                    stack.add(working.getMoves(false, stack.size() + 1 == dist));
                 }
+                return null;
             }
         };
     }
 
-    Generator<State> getValidNeighbors(State state, int dist) {
-        return new Generator<State>() {
+    Neighborhood<Move<T>> getValidMoves(State state, int dist) {
+        return filterValid(getMoves(state, dist), state.getProblem());
+    }
+
+    private Neighborhood<Move<T>> filterValid(Neighborhood<Move<T>> moves, String problem) {
+        return new Neighborhood<Move<T>>() {
             @Override
-            protected void run() throws InterruptedException {
-                for (State neighbor : getNeighbors(state, dist)) {
-                    if (neighbor.isValid()) {
-                        if (state.getProblem().equals("VRP")) {
-                            System.out.println("Found valid.");
+            protected Move<T> advance() {
+                while (moves.hasNext()) {
+                    Move<T> move = moves.next();
+                    if (move.isValid()) {
+                        if (problem.equals("VRP")) {
+                            Log.log(4, "Found valid.");
                         }
-                        this.yield(neighbor);
+                        return move;
                     } else {
-                        if (state.getProblem().equals("VRP")) {
-                            System.out.println("Found invalid.");
+                        if (problem.equals("VRP")) {
+                            Log.log(4, "Found invalid.");
                         }
                     }
                 }
+                return null;
             }
         };
     }
+
+    private static ForkJoinPool scanPool = null;
+
+    private static synchronized ForkJoinPool getScanPool() {
+        if (scanPool == null) {
+            scanPool = new ForkJoinPool(Settings.lsScanThreads);
+        }
+        return scanPool;
+    }
+
+    /**
+     * Scans the neighbors of current at distance dist with one fork-join task per
+     * partition of its neighborhood and returns the chosen improving neighbor.
+     *
+     * In best-improvement mode every partition reports its best improving neighbor
+     * and the best over all partitions wins, ties going to the earlier partition. In
+     * first-improvement mode a partition stops at its first improving neighbor and
+     * every later partition is cancelled, so the result is the first improving
+     * neighbor in enumeration order, just as in the sequential scan.
+     */
+    private Optional<State> scanInParallel(State current, int dist, Timer timer, Optional<Double> maxTime,
+                                           AtomicBoolean timedOut) {
+        int numPartitions = current.numMovePartitions();
+        AtomicReferenceArray<State> found = new AtomicReferenceArray<>(numPartitions);
+        AtomicInteger firstFound = new AtomicInteger(Integer.MAX_VALUE);
+        T currentValue = current.getValueRemember();
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int p = 0; p < numPartitions; p ++) {
+            int partition = p;
+            tasks.add(getScanPool().submit(() -> {
+                Neighborhood<Move<T>> moves;
+                if (dist == 1) {
+                    moves = current.getMovePartition(partition, isImprovingOnly(dist), true);
+                } else {
+                    // Chains are applied in place, so every part needs a working copy of its own
+                    AbstractLocalSearchState<T> working = current.copy();
+                    moves = expand(working, working.getMovePartition(partition, false, false), dist);
+                }
+
+                State partitionBest = null;
+                for (Move<T> move : filterValid(moves, current.getProblem())) {
+                    if (timedOut.get() || (maxTime.isPresent() && timer.getCurrentTime() > maxTime.get())) {
+                        timedOut.set(true);
+                        break;
+                    }
+                    if (Settings.lsTakeFirst && partition > firstFound.get()) {
+                        break;
+                    }
+
+                    T value = move.getValueRemember(currentValue);
+                    if (improves(value, currentValue)
+                            && (partitionBest == null || value.compareTo(partitionBest.getValueRemember()) < 0)) {
+                        partitionBest = (State) move.materialize();
+                        if (Settings.lsTakeFirst) {
+                            firstFound.accumulateAndGet(partition, Math::min);
+                            break;
+                        }
+                    }
+                }
+                found.set(partition, partitionBest);
+            }));
+        }
+        try {
+            for (ForkJoinTask<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            // Stops the running parts at their next move and the rest before they start
+            timedOut.set(true);
+            for (ForkJoinTask<?> task : tasks) {
+                task.cancel(false);
+            }
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Parallel scan failed", e.getCause());
+        }
+
+        Optional<State> result = Optional.empty();
+        for (int p = 0; p < numPartitions; p ++) {
+            State partitionBest = found.get(p);
+            if (partitionBest == null) {
+                continue;
+            }
+            if (Settings.lsTakeFirst) {
+                return Optional.of(partitionBest);
+            }
+            if (!result.isPresent() || lt(partitionBest, result.get())) {
+                result = Optional.of(partitionBest);
+            }
+        }
+        return result;
+    }
 }
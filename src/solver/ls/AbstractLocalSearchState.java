@@ -1,6 +1,7 @@
 package solver.ls;
 
 import java.util.Optional;
+import java.util.SplittableRandom;
 
 public abstract class AbstractLocalSearchState<T extends Comparable<T>> {
     abstract T getValue(Optional<T> best);
@@ -19,16 +20,71 @@ public abstract class AbstractLocalSearchState<T extends Comparable<T>> {
             return value.get();
         } else {
             T result = getValue(best);
+            Metrics.count(Metrics.Counter.statesEvaluated);
             value = Optional.of(result);
             return result;
         }
     }
 
-    abstract Generator<AbstractLocalSearchState<T>> getNeighbors();
+    Optional<T> getKnownValue() {
+        return value;
+    }
+
+    void rememberValue(T value) {
+        this.value = Optional.of(value);
+    }
+
+    /**
+     * For moves applied in place, which change the value or restore an earlier one.
+     */
+    void setKnownValue(Optional<T> value) {
+        this.value = value;
+    }
+
+    /**
+     * A copy of this state that moves can be applied to in place.
+     */
+    abstract AbstractLocalSearchState<T> copy();
+
+    /**
+     * When improvingOnly is set, moves whose estimated change in cost is not an
+     * improvement over this state are skipped before they are handed out. When
+     * validOnly is set, so are moves to invalid neighbors; chains of moves only set
+     * it for their last move, as their earlier moves may pass through invalid states.
+     */
+    abstract Neighborhood<Move<T>> getMoves(boolean improvingOnly, boolean validOnly);
+
+    /**
+     * Number of parts the moves split into, which can be scanned independently.
+     */
+    int numMovePartitions() {
+        return 1;
+    }
+
+    /**
+     * The moves of one part. Walking the parts in order yields the same sequence
+     * as getMoves.
+     */
+    Neighborhood<Move<T>> getMovePartition(int part, boolean improvingOnly, boolean validOnly) {
+        return getMoves(improvingOnly, validOnly);
+    }
+
+    /**
+     * Every neighbor built, for callers that need the states themselves.
+     */
+    Neighborhood<AbstractLocalSearchState<T>> getNeighbors(boolean improvingOnly) {
+        Neighborhood<Move<T>> moves = getMoves(improvingOnly, false);
+        return new Neighborhood<AbstractLocalSearchState<T>>() {
+            @Override
+            protected AbstractLocalSearchState<T> advance() {
+                return moves.hasNext() ? moves.next().materialize() : null;
+            }
+        };
+    }
 
     abstract boolean isValid();
 
-    abstract AbstractLocalSearchState<T> getRandom(double dist);
+    abstract AbstractLocalSearchState<T> getRandom(double dist, SplittableRandom rand);
 
     abstract void print();
 
@@ -0,0 +1,138 @@
+package solver.ls;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Solves every instance of a directory in this JVM, the way runAll.sh does with one
+ * JVM per instance.
+ *
+ * Instances run on a fixed pool, largest file first so the long runs start early.
+ * Each instance's search is interrupted once it has run for timeLimit seconds and
+ * reports the best solution found so far. Result lines are printed, and appended to
+ * the log file if there is one, in the order instances finish; instances that fail
+ * report their best solution so far, or the same "--" line as in runAll.sh if
+ * they have none. Metrics are not told apart by instance; one summary over the
+ * whole batch is printed at the end.
+ */
+public class BatchRunner {
+    private final int numThreads;
+    private final double timeLimit;
+    private final String logFile;
+
+    public BatchRunner(int numThreads, double timeLimit, String logFile) {
+        this.numThreads = numThreads > 0 ? numThreads : Runtime.getRuntime().availableProcessors();
+        this.timeLimit = timeLimit;
+        this.logFile = logFile;
+    }
+
+    public void run(Path inputFolder) {
+        if (logFile != null && Files.exists(Paths.get(logFile))) {
+            System.out.println("Logfile " + logFile + " already exists, terminating.");
+            System.exit(1);
+        }
+
+        List<Path> instances;
+        try (Stream<Path> files = Files.list(inputFolder)) {
+            instances = files
+                    .filter(Files::isRegularFile)
+                    .filter(file -> file.getFileName().toString().endsWith(".vrp"))
+                    .sorted(Comparator.comparingLong(BatchRunner::size).reversed())
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            System.out.println("Error: in BatchRunner.run() " + inputFolder + "\n" + e.getMessage());
+            System.exit(-1);
+            return;
+        }
+
+        IncumbentSink sink = IncumbentSink.fromSettings();
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        ScheduledExecutorService deadlines = Executors.newSingleThreadScheduledExecutor();
+        try (PrintWriter log = logFile == null ? null : new PrintWriter(Files.newBufferedWriter(Paths.get(logFile)))) {
+            CompletionService<String> completion = new ExecutorCompletionService<>(pool);
+            for (Path instance : instances) {
+                completion.submit(() -> solve(instance, deadlines, sink));
+            }
+
+            for (int i = 0; i < instances.size(); i ++) {
+                String line = completion.take().get();
+                System.out.println(line);
+                if (log != null) {
+                    log.println(line);
+                    log.flush();
+                }
+            }
+            Log.flush();
+            System.out.println("Metrics: " + Metrics.summary());
+        } catch (IOException e) {
+            System.out.println("Error: writing " + logFile + "\n" + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // solve catches everything itself
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+            deadlines.shutdownNow();
+        }
+    }
+
+    private String solve(Path instance, ScheduledExecutorService deadlines, IncumbentSink sink) {
+        Thread worker = Thread.currentThread();
+        Object lock = new Object();
+        boolean[] done = { false };
+        ScheduledFuture<?> deadline = deadlines.schedule(() -> {
+            synchronized (lock) {
+                if (!done[0]) {
+                    worker.interrupt();
+                }
+            }
+        }, (long) (timeLimit * 1000), TimeUnit.MILLISECONDS);
+
+        String name = instance.getFileName().toString();
+        Timer watch = new Timer();
+        BestKnown bestKnown = new BestKnown(name, watch, sink);
+        try {
+            return Main.solve(instance.toString(), watch, false, bestKnown);
+        } catch (Throwable e) {
+            // One failing instance, e.g. without the CP natives, must not end the batch
+            System.out.println("Error: " + instance + "\n" + e);
+            if (bestKnown.getBest().isPresent()) {
+                // Failed late, e.g. in a CP fallback, after finding solutions
+                return Main.resultLine(name, watch, bestKnown.getBest());
+            }
+            return "Instance: " + name.substring(0, name.lastIndexOf('.')) + " Time: -- Result: --";
+        } finally {
+            deadline.cancel(false);
+            synchronized (lock) {
+                done[0] = true;
+                // Clear an interrupt that arrived after the search, before the next instance
+                Thread.interrupted();
+            }
+        }
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
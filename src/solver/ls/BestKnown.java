@@ -0,0 +1,64 @@
+package solver.ls;
+
+import java.util.Optional;
+
+/**
+ * Best solution known so far for one run, and the run's result line.
+ *
+ * Every strictly better solution offered is published to the sink. The result line
+ * is printed exactly once: by finish when the run ends normally, or by emit with
+ * the best known solution when the run is cut short, e.g. by SIGTERM or a deadline.
+ */
+public class BestKnown {
+    private final String filename;
+    private final Timer watch;
+    private final IncumbentSink sink;
+
+    private Optional<Solution> best = Optional.empty();
+    private double bestCost;
+    private boolean printed = false;
+
+    public BestKnown(String filename, Timer watch, IncumbentSink sink) {
+        this.filename = filename;
+        this.watch = watch;
+        this.sink = sink;
+    }
+
+    public synchronized void offer(Solution solution) {
+        double cost = solution.getCost();
+        if (best.isPresent() && cost >= bestCost) {
+            return;
+        }
+        best = Optional.of(solution);
+        bestCost = cost;
+        sink.publish(() -> Main.resultLine(filename, watch, Optional.of(solution)), solution);
+    }
+
+    public synchronized Optional<Solution> getBest() {
+        return best;
+    }
+
+    /**
+     * Prints the run's own result line, unless a line was already emitted.
+     */
+    public synchronized void finish(String line) {
+        if (!printed) {
+            printed = true;
+            Log.flush();
+            System.out.println(line);
+        }
+    }
+
+    /**
+     * Prints the result line of the best known solution, unless a line was already
+     * printed.
+     */
+    public synchronized void emit() {
+        if (!printed) {
+            printed = true;
+            Log.flush();
+            System.out.println(Main.resultLine(filename, watch, best));
+            System.out.flush();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package solver.ls;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Pure-Java search for a packing of the customers' demands into the vehicles.
+ *
+ * Customers are placed in order of decreasing demand by a depth-first search that
+ * tries vehicles in index order, so its first dive is exactly first-fit-decreasing.
+ * Vehicles with equal loads are interchangeable, so only the first of them is tried
+ * at each node, and a node is pruned once the remaining demand cannot fit into the
+ * space still usable by the smallest customer. The search gives up after nodeLimit
+ * nodes, in which case the caller escalates to CP.
+ */
+public class BinPacker {
+    private VRPInstance problem;
+
+    private final int[] customers; // customers by decreasing demand
+    private final int[] demands;   // demand of customers[i]
+    private final int[] remainingDemand; // total demand of customers[i..]
+
+    private int[] loads;
+    private int[] binOfItem;
+    private long nodes;
+    private long nodeLimit;
+
+    public BinPacker(VRPInstance problem) {
+        this.problem = problem;
+
+        int numItems = problem.numCustomers - 1;
+        Integer[] sorted = new Integer[numItems];
+        for (int c = 1; c < problem.numCustomers; c ++) {
+            sorted[c - 1] = c;
+        }
+        // Stable, so customers with equal demand keep their index order
+        Arrays.sort(sorted, (c1, c2) -> Integer.compare(problem.demandOfCustomer[c2], problem.demandOfCustomer[c1]));
+
+        this.customers = new int[numItems];
+        this.demands = new int[numItems];
+        for (int i = 0; i < numItems; i ++) {
+            customers[i] = sorted[i];
+            demands[i] = problem.demandOfCustomer[sorted[i]];
+        }
+
+        this.remainingDemand = new int[numItems + 1];
+        for (int i = numItems - 1; i >= 0; i --) {
+            remainingDemand[i] = remainingDemand[i + 1] + demands[i];
+        }
+    }
+
+    /**
+     * Number of bins first-fit-decreasing packs the demands into, with a bin of its
+     * own for any demand over the capacity.
+     */
+    public static int firstFitDecreasing(int[] demands, int capacity) {
+        int[] sorted = demands.clone();
+        Arrays.sort(sorted);
+        int[] loads = new int[sorted.length];
+        int numBins = 0;
+        for (int i = sorted.length - 1; i >= 0; i --) {
+            int bin = 0;
+            while (bin < numBins && loads[bin] + sorted[i] > capacity) {
+                bin ++;
+            }
+            loads[bin] += sorted[i];
+            numBins = Math.max(numBins, bin + 1);
+        }
+        return numBins;
+    }
+
+    public Optional<Solution> getFeasible(long nodeLimit) {
+        this.loads = new int[problem.numVehicles];
+        this.binOfItem = new int[customers.length];
+        this.nodes = 0;
+        this.nodeLimit = nodeLimit;
+
+        if (customers.length > 0 && demands[0] > problem.vehicleCapacity) {
+            return Optional.empty();
+        }
+
+        boolean packed = place();
+        Settings.debug(1, "Bin packing " + (packed ? "found" : "did not find") + " a packing in " + nodes + " nodes");
+        if (!packed) {
+            return Optional.empty();
+        }
+        return Optional.of(new Solution(problem, Routes.fromAssignment(problem.numVehicles, customers, binOfItem)));
+    }
+
+    /**
+     * Places every item, returning whether it succeeded. The search is depth-first
+     * with an explicit stack: item i is placed in binOfItem[i] for every i below the
+     * current depth, so large instances cannot overflow the call stack.
+     */
+    private boolean place() {
+        int i = 0;
+        int firstBin = 0; // first bin still to be tried for item i
+        boolean entered = true;
+        while (true) {
+            if (entered) {
+                if (i == customers.length) {
+                    return true;
+                }
+                if (++ nodes > nodeLimit) {
+                    return false;
+                }
+                firstBin = canFitRemaining(i) ? 0 : loads.length;
+            }
+
+            int bin = firstBin;
+            while (bin < loads.length
+                    && (loads[bin] + demands[i] > problem.vehicleCapacity || hasEarlierEqualLoad(bin))) {
+                bin ++;
+            }
+
+            if (bin < loads.length) {
+                loads[bin] += demands[i];
+                binOfItem[i] = bin;
+                i ++;
+                entered = true;
+                continue;
+            }
+
+            // Every bin failed for item i: take back the choice for item i - 1
+            if (i == 0) {
+                return false;
+            }
+            i --;
+            loads[binOfItem[i]] -= demands[i];
+            if (nodes > nodeLimit) {
+                return false;
+            }
+            firstBin = binOfItem[i] + 1;
+            entered = false;
+        }
+    }
+
+    /**
+     * Whether items i.. can still fit: space smaller than the smallest demand left
+     * can never be used again.
+     */
+    private boolean canFitRemaining(int i) {
+        int smallest = demands[customers.length - 1];
+        int usable = 0;
+        for (int load : loads) {
+            int residual = problem.vehicleCapacity - load;
+            if (residual >= smallest) {
+                usable += residual;
+            }
+        }
+        return usable >= remainingDemand[i];
+    }
+
+    private boolean hasEarlierEqualLoad(int bin) {
+        for (int other = 0; other < bin; other ++) {
+            if (loads[other] == loads[bin]) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
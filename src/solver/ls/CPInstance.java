@@ -4,20 +4,22 @@ import ilog.concert.*;
 import ilog.cp.IloCP;
 
 import java.util.*;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class CPInstance {
     private static Map<VRPInstance, CPInstance> cpInstances = new HashMap<>();
     private VRPInstance problem;
-    private IloCP cp;
-
-
 
     private CPInstance(VRPInstance problem) {
         this.problem = problem;
-        this.cp = null;
     }
 
-    public static CPInstance getInstance(VRPInstance problem) {
+    public static synchronized CPInstance getInstance(VRPInstance problem) {
         if (cpInstances.containsKey(problem)) {
             return cpInstances.get(problem);
         }
@@ -27,49 +29,66 @@ public class CPInstance {
         return cpInstance;
     }
 
-    private void start() throws IloException {
-        this.cp = new IloCP();
-        this.cp.setParameter(IloCP.IntParam.RandomSeed, Settings.rand.nextInt(100));
+    /**
+     * Forgets the instance of problem, once problem is solved.
+     */
+    public static synchronized void release(VRPInstance problem) {
+        cpInstances.remove(problem);
+    }
+
+    /**
+     * Every solve gets its own engine, so solves from different threads never share one.
+     */
+    private IloCP start(int seed) throws IloException {
+        IloCP cp = new IloCP();
+        cp.setParameter(IloCP.IntParam.RandomSeed, seed);
         if (Settings.verbosity < 5) {
-            this.cp.setOut(null);
+            cp.setOut(null);
         }
+        return cp;
+    }
+
+    private static boolean solve(IloCP cp) throws IloException {
+        long start = Metrics.start();
+        boolean solved = cp.solve();
+        Metrics.record(Metrics.Latency.cp, start);
+        Metrics.count(Metrics.Counter.cpCalls);
+        return solved;
     }
 
     public Optional<Solution> getFeasible() throws IloException {
-        List<List<Integer>> bins = new ArrayList<>();
-        for (int v = 0; v < problem.numVehicles; v++) {
-            bins.add(new ArrayList<>());
-        }
+        Routes bins = Routes.empty(problem.numVehicles);
 
 //        return solveBin(bins);
-        return this.managerQuadrantBins(bins);
+        return this.managerSectorBins(bins);
     }
 
-    public Optional<Solution> solveQuadrantBin(List<List<Integer>> bins, int numVehiclesPerQuad,
-                                 int numCustomersInQuad,
+    public Optional<Solution> solveSectorBin(Routes bins, int numVehiclesPerSector,
+                                 int numCustomersInSector,
                                  ArrayList<Integer> customerIndices) throws IloException {
-        start();
+        return solveSectorBin(bins, numVehiclesPerSector, numCustomersInSector, customerIndices, new SectorGroup());
+    }
 
-        IloIntExpr[] vehicleLoads = cp.intVarArray(numVehiclesPerQuad, 0, problem.vehicleCapacity);
+    private Optional<Solution> solveSectorBin(Routes bins, int numVehiclesPerSector,
+                                 int numCustomersInSector,
+                                 ArrayList<Integer> customerIndices,
+                                 SectorGroup group) throws IloException {
+        IloCP cp = start(Rng.cpSeed(customerIndices));
 
-        IloIntVar[] whichVehicle = new IloIntVar[numCustomersInQuad];
-        for (int c = 0; c < numCustomersInQuad; c ++) {
-            Optional<Integer> whichBin = Optional.empty();
-            for (int binInd = 0; binInd < bins.size(); binInd ++) {
-                if (bins.get(binInd).contains(c)) {
-                    whichBin = Optional.of(binInd);
-                    break;
-                }
-            }
-            if (whichBin.isPresent()) {
-                whichVehicle[c] = cp.intVar(new int[] { whichBin.get() });
+        IloIntExpr[] vehicleLoads = cp.intVarArray(numVehiclesPerSector, 0, problem.vehicleCapacity);
+
+        IloIntVar[] whichVehicle = new IloIntVar[numCustomersInSector];
+        for (int c = 0; c < numCustomersInSector; c ++) {
+            int whichBin = bins.routeOf(c);
+            if (whichBin >= 0) {
+                whichVehicle[c] = cp.intVar(new int[] { whichBin });
             } else {
-                whichVehicle[c] = cp.intVar(0, numVehiclesPerQuad);
+                whichVehicle[c] = cp.intVar(0, numVehiclesPerSector - 1);
             }
         }
 
-        int[] demand = new int[numCustomersInQuad];
-        for (int c = 0; c < numCustomersInQuad; c ++) {
+        int[] demand = new int[numCustomersInSector];
+        for (int c = 0; c < numCustomersInSector; c ++) {
             int customerIndex = customerIndices.get(c);
             demand[c] = problem.demandOfCustomer[customerIndex];
         }
@@ -77,198 +96,135 @@ public class CPInstance {
         IloConstraint pack = cp.pack(vehicleLoads, whichVehicle, demand);
         cp.add(pack);
 
-        // Solves
+        // Solves, unless another sector of the group already failed
         Optional<Solution> result;
-        if (cp.solve()) {
-            List<List<Integer>> newBins = new ArrayList<>();
-            for (int v = 0; v < numVehiclesPerQuad; v ++) {
-                newBins.add(new ArrayList<>());
-            }
-
-            for (int c = 0; c < numCustomersInQuad; c ++) {
-                int bin = (int) cp.getValue(whichVehicle[c]);
-                newBins.get(bin).add(customerIndices.get(c));
+        if (group.register(cp) && solve(cp)) {
+            int[] customers = new int[numCustomersInSector];
+            int[] binOfCustomer = new int[numCustomersInSector];
+            for (int c = 0; c < numCustomersInSector; c ++) {
+                customers[c] = customerIndices.get(c);
+                binOfCustomer[c] = (int) cp.getValue(whichVehicle[c]);
             }
 
-            result = Optional.of(new Solution(problem, newBins));
+            result = Optional.of(new Solution(problem, Routes.fromAssignment(numVehiclesPerSector, customers, binOfCustomer)));
         } else {
             result = Optional.empty();
         }
+        group.unregister(cp);
         cp.end();
         return result;
     }
 
-    public Optional<Solution> managerQuadrantBins(List<List<Integer>> bins) throws IloException{
-
-        Optional<Solution> quadResults;
-
-        if (problem.numVehicles < 8) {
+    /**
+     * Engines of sectors solved together. Once one sector fails the others are
+     * aborted, and sectors that have not started yet are not solved at all.
+     */
+    private static class SectorGroup {
+        private final Set<IloCP> engines = new HashSet<>();
+        private boolean aborted = false;
+
+        synchronized boolean register(IloCP cp) {
+            if (!aborted) {
+                engines.add(cp);
+            }
+            return !aborted;
+        }
 
-            // Get customers in each quadrant
-            ArrayList<Integer> upperQuadCustomerIndices = new ArrayList<>();
-            ArrayList<Integer> lowerQuadCustomerIndices = new ArrayList<>();
+        synchronized void unregister(IloCP cp) {
+            engines.remove(cp);
+        }
 
-            for (int c =1; c < problem.numCustomers; c ++) {
-                int customerQuad = problem.quadrantOfCustomer[c];
-                if ((customerQuad == 1) || (customerQuad == 2)) {
-                    upperQuadCustomerIndices.add(c);
-                }
-                else {
-                    lowerQuadCustomerIndices.add(c);
-                }
-//                System.out.println(upperQuadCustomerIndices);
-//                System.out.println(lowerQuadCustomerIndices);
+        synchronized void abort() {
+            aborted = true;
+            for (IloCP cp : engines) {
+                cp.abortSearch();
             }
+        }
+    }
 
-            // Get customer demand in each quadrant
-            int upperQuadSumDemand = 0;
-            for (Integer customer : upperQuadCustomerIndices) {
-                upperQuadSumDemand += problem.demandOfCustomer[customer];
+    /**
+     * Solves every sector concurrently, each on its own engine, and joins their
+     * routes in sector order. Returns empty as soon as any sector fails, or with
+     * the interrupt flag set when interrupted.
+     */
+    private Optional<Solution> solveSectorBins(Routes bins, int[] vehiclesOfSector,
+                                                 List<ArrayList<Integer>> customersOfSector) throws IloException {
+        int numSectors = vehiclesOfSector.length;
+        SectorGroup group = new SectorGroup();
+        ExecutorService pool = Executors.newFixedThreadPool(numSectors);
+        try {
+            CompletionService<Optional<Solution>> completion = new ExecutorCompletionService<>(pool);
+            Map<Future<Optional<Solution>>, Integer> sectorOfFuture = new HashMap<>();
+            for (int s = 0; s < numSectors; s ++) {
+                int sector = s;
+                sectorOfFuture.put(completion.submit(() -> solveSectorBin(bins, vehiclesOfSector[sector],
+                        customersOfSector.get(sector).size(), customersOfSector.get(sector), group)), sector);
             }
-            int lowerQuadSumDemand = 0;
-            for (Integer customer : lowerQuadCustomerIndices) {
-                lowerQuadSumDemand += problem.demandOfCustomer[customer];
+
+            Routes[] pathsOfSector = new Routes[numSectors];
+            for (int i = 0; i < numSectors; i ++) {
+                Future<Optional<Solution>> done = completion.take();
+                Optional<Solution> sectorSol = done.get();
+                if (!sectorSol.isPresent()) {
+                    group.abort();
+                    return Optional.empty();
+                }
+                pathsOfSector[sectorOfFuture.get(done)] = sectorSol.get().getPaths();
             }
-            int totalCustomerDemand = upperQuadSumDemand + lowerQuadSumDemand;
-
-            // Get number of vehicles in each quadrant
-//            int upperQuadVehicles = (int) Math.ceil(problem.numVehicles / 2.0);
-//            int lowerQuadVehicles = (int) Math.floor(problem.numVehicles / 2.0);
-            double proportionOfDemand = ((double) upperQuadSumDemand) / totalCustomerDemand;
-            System.out.println("proportion of demand = " + proportionOfDemand);
-            int upperQuadVehicles = (int) Math.round(problem.numVehicles *
-                    proportionOfDemand);
-            int lowerQuadVehicles = problem.numVehicles - upperQuadVehicles;
-
-            // Solve
-            Optional<Solution> upperQuadSol = this.solveQuadrantBin(bins, upperQuadVehicles,
-                    upperQuadCustomerIndices.size(), upperQuadCustomerIndices);
-            Optional<Solution> lowerQuadSol = this.solveQuadrantBin(bins, lowerQuadVehicles,
-                    lowerQuadCustomerIndices.size(), lowerQuadCustomerIndices);
-
-
-            if (upperQuadSol.isPresent() && lowerQuadSol.isPresent()) {
-                System.out.println("yay quads worked");
-                // Combine solutions
-                List<List<Integer>> joinedPaths = upperQuadSol.get().getPaths();
-                joinedPaths.addAll(lowerQuadSol.get().getPaths());
-                System.out.println("joined paths is " + joinedPaths);
-                return Optional.of(new Solution(problem, joinedPaths));
-            } else {
-                System.out.println("sad quads no work");
-                System.out.println("Vehicles:");
-                System.out.println(upperQuadVehicles + " " + lowerQuadVehicles);
-                return this.solveBin(bins);
+            return Optional.of(new Solution(problem, Routes.concat(pathsOfSector)));
+        } catch (InterruptedException e) {
+            group.abort();
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        } catch (ExecutionException e) {
+            group.abort();
+            if (e.getCause() instanceof IloException) {
+                throw (IloException) e.getCause();
             }
+            throw new RuntimeException("Sector solve failed", e.getCause());
+        } finally {
+            pool.shutdown();
         }
-        else {
-
-            // Get customers in each quadrant
-            ArrayList<Integer> quad1CustomerIndices = new ArrayList<>();
-            ArrayList<Integer> quad2CustomerIndices = new ArrayList<>();
-            ArrayList<Integer> quad3CustomerIndices = new ArrayList<>();
-            ArrayList<Integer> quad4CustomerIndices = new ArrayList<>();
-
-            for (int c =1; c < problem.numCustomers-1; c ++) {
-                int customerQuad = problem.quadrantOfCustomer[c];
-                if (customerQuad == 1) {
-                    quad1CustomerIndices.add(c);
-                }
-                else if (customerQuad == 2){
-                    quad2CustomerIndices.add(c);
-                }
-                else if (customerQuad == 3) {
-                    quad3CustomerIndices.add(c);
-                } else {
-                    quad4CustomerIndices.add(c);
-                }
-            }
+    }
 
-            // Get number of vehicles in each quadrant
-//            int upperQuadVehicles = (int) Math.ceil(problem.numVehicles / 2.0);
-//            int lowerQuadVehicles = (int) Math.floor(problem.numVehicles / 2.0);
-//
-//            int quad1Vehicles = (int) Math.ceil(upperQuadVehicles / 2.0);
-//            int quad2Vehicles = (int) Math.floor(upperQuadVehicles / 2.0);
-//            int quad3Vehicles = (int) Math.ceil(lowerQuadVehicles / 2.0);
-//            int quad4Vehicles = (int) Math.floor(lowerQuadVehicles / 2.0);
-
-            int quad1SumDemand = 0;
-            for (Integer customer : quad1CustomerIndices) {
-                quad1SumDemand += problem.demandOfCustomer[customer];
-            }
-            int quad2SumDemand = 0;
-            for (Integer customer : quad2CustomerIndices) {
-                quad2SumDemand += problem.demandOfCustomer[customer];
-            }
-            int quad3SumDemand = 0;
-            for (Integer customer : quad3CustomerIndices) {
-                quad3SumDemand += problem.demandOfCustomer[customer];
-            }
-            int quad4SumDemand = 0;
-            for (Integer customer : quad4CustomerIndices) {
-                quad4SumDemand += problem.demandOfCustomer[customer];
-            }
-            int totalCustomerDemand = quad1SumDemand + quad2SumDemand + quad3SumDemand + quad4SumDemand;
-
-            double q1ProportionOfDemand = ((double) quad1SumDemand) / totalCustomerDemand;
-//            System.out.println("proportion of demand = " + proportionOfDemand);
-            int quad1Vehicles = (int) Math.round(problem.numVehicles *
-                    q1ProportionOfDemand);
-            double q2ProportionOfDemand = ((double) quad2SumDemand) / totalCustomerDemand;
-            int quad2Vehicles = (int) Math.round(problem.numVehicles *
-                    q2ProportionOfDemand);
-            double q3ProportionOfDemand = ((double) quad3SumDemand) / totalCustomerDemand;
-            int quad3Vehicles = (int) Math.round(problem.numVehicles *
-                    q3ProportionOfDemand);
-            int quad4Vehicles = problem.numVehicles - quad1Vehicles - quad2Vehicles - quad3Vehicles;
-
-            // Solve
-            Optional<Solution> quad1Sol = this.solveQuadrantBin(bins, quad1Vehicles,
-                    quad1CustomerIndices.size(), quad1CustomerIndices);
-            Optional<Solution> quad2Sol = this.solveQuadrantBin(bins, quad2Vehicles,
-                    quad2CustomerIndices.size(), quad2CustomerIndices);
-            Optional<Solution> quad3Sol = this.solveQuadrantBin(bins, quad3Vehicles,
-                    quad3CustomerIndices.size(), quad3CustomerIndices);
-            Optional<Solution> quad4Sol = this.solveQuadrantBin(bins, quad4Vehicles,
-                    quad4CustomerIndices.size(), quad4CustomerIndices);
-
-            if (quad1Sol.isPresent() && quad2Sol.isPresent() && quad3Sol.isPresent()
-                    && quad4Sol.isPresent()) {
-                System.out.println("yay quads worked");
-                // Combine solutions
-                List<List<Integer>> joinedPaths = quad1Sol.get().getPaths();
-                joinedPaths.addAll(quad2Sol.get().getPaths());
-                joinedPaths.addAll(quad3Sol.get().getPaths());
-                joinedPaths.addAll(quad4Sol.get().getPaths());
-                System.out.println("joined paths is " + joinedPaths);
-                return Optional.of(new Solution(problem, joinedPaths));
-            } else {
-                System.out.println("sad quads no work");
-                System.out.println("Vehicles:");
-                System.out.println(quad1Vehicles + " " + quad2Vehicles + " " + quad3Vehicles +
-                        " " + quad4Vehicles);
-                return this.solveBin(bins);
-            }
+    public Optional<Solution> managerSectorBins(Routes bins) throws IloException {
+        // Fewer, larger sectors leave more room to pack when a finer split does not fit
+        Sectors sectors = new Sectors(problem, Sectors.chooseNumSectors(problem));
+        Optional<int[]> vehicles = sectors.getVehicles();
+        for (int numSectors = sectors.size() - 1; !vehicles.isPresent() && numSectors >= 2; numSectors --) {
+            sectors = new Sectors(problem, numSectors);
+            vehicles = sectors.getVehicles();
+        }
+        if (!vehicles.isPresent()) {
+            Log.log(1, "Sectors need more vehicles than there are, solving whole.");
+            return this.solveBin(bins);
+        }
+        Settings.debug(1, "Vehicles per sector: " + Arrays.toString(vehicles.get()));
+
+        Optional<Solution> sectorSol = this.solveSectorBins(bins, vehicles.get(), sectors.getCustomers());
+        if (sectorSol.isPresent()) {
+            Log.log(1, "Sectors worked, {} sectors.", sectors.size());
+            return sectorSol;
+        } else if (Thread.currentThread().isInterrupted()) {
+            // Cut short, e.g. by a deadline: the whole solve would not stop for it
+            Log.log(1, "Sectors interrupted, not solving whole.");
+            return Optional.empty();
+        } else {
+            Log.log(1, "Sectors failed, vehicles: {}", Arrays.toString(vehicles.get()));
+            return this.solveBin(bins);
         }
     }
 
-    public Optional<Solution> solveBin(List<List<Integer>> bins) throws IloException {
-        start();
+    public Optional<Solution> solveBin(Routes bins) throws IloException {
+        IloCP cp = start(Rng.cpSeed(bins));
 
         IloIntExpr[] vehicleLoads = cp.intVarArray(problem.numVehicles, 0, problem.vehicleCapacity);
 
         IloIntVar[] whichVehicle = new IloIntVar[problem.numCustomers - 1];
         for (int c = 1; c < problem.numCustomers; c ++) {
-            Optional<Integer> whichBin = Optional.empty();
-            for (int binInd = 0; binInd < bins.size(); binInd ++) {
-                if (bins.get(binInd).contains(c)) {
-                    whichBin = Optional.of(binInd);
-                    break;
-                }
-            }
-            if (whichBin.isPresent()) {
-                whichVehicle[c - 1] = cp.intVar(new int[] { whichBin.get() });
+            int whichBin = bins.routeOf(c);
+            if (whichBin >= 0) {
+                whichVehicle[c - 1] = cp.intVar(new int[] { whichBin });
             } else {
                 whichVehicle[c - 1] = cp.intVar(0, problem.numVehicles - 1);
             }
@@ -282,41 +238,37 @@ public class CPInstance {
         IloConstraint pack = cp.pack(vehicleLoads, whichVehicle, demand);
         cp.add(pack);
 
-        IloNumExpr wanderingTrucks = cp.numExpr();
-
-        for (int c1 = 1; c1 < problem.numCustomers; c1 ++) {
-            for (int c2 = c1; c2 < problem.numCustomers; c2 ++) {
-//                if (problem.quadrantOfCustomer[c1] != problem.quadrantOfCustomer[c2]){
-//                    IloNumVar truckIsWandering = cp.numVar(0,1);
-//
-//                    cp.add(cp.ifThenElse(
-//                            cp.eq(whichVehicle[c1-1], whichVehicle[c2-1]),
-//                            cp.eq(truckIsWandering, 1),
-//                            cp.eq(truckIsWandering, 0)));
-//
-//                    cp.add(cp.ifThenElse(
-//                            cp.eq(whichVehicle[c1-1], whichVehicle[c2-1]),
-//                            cp.eq(truckIsWandering, 1),
-//                            cp.eq(truckIsWandering, 0)));
-//
-//                    wanderingTrucks = cp.sum(wanderingTrucks, truckIsWandering);
-//                }
-
-                IloNumVar customerSparsity = cp.numVar(0,1000000);
-
-                int customerPairDistance = (int) Math.sqrt(Math.pow(
-                        problem.xCoordOfCustomer[c1] - problem.xCoordOfCustomer[c2], 2)
-                + Math.pow(problem.yCoordOfCustomer[c1]-problem.yCoordOfCustomer[c2], 2));
-
-                cp.add(cp.ifThenElse(
-                        cp.eq(whichVehicle[c1-1], whichVehicle[c2-1]),
-                        cp.eq(customerSparsity, customerPairDistance),
-                        cp.eq(customerSparsity, 0)));
-
-                wanderingTrucks = cp.sum(wanderingTrucks, customerSparsity);
-
+        // Every pair of customers sharing a vehicle adds their distance. With cpSparsityK
+        // only pairs where one is among the other's k nearest count, keeping the model
+        // linear in the number of customers.
+        List<IloIntExpr> sameVehicle = new ArrayList<>();
+        List<Integer> pairDistances = new ArrayList<>();
+        if (Settings.cpSparsityK > 0) {
+            int[][] nearest = problem.getNearest(Settings.cpSparsityK);
+            Set<Long> pairs = new HashSet<>();
+            for (int c1 = 1; c1 < problem.numCustomers; c1 ++) {
+                for (int c2 : nearest[c1]) {
+                    long pair = (long) Math.min(c1, c2) * problem.numCustomers + Math.max(c1, c2);
+                    if (pairs.add(pair)) {
+                        sameVehicle.add(cp.eq(whichVehicle[c1-1], whichVehicle[c2-1]));
+                        pairDistances.add((int) problem.dist(c1, c2));
+                    }
+                }
             }
+        } else {
+            for (int c1 = 1; c1 < problem.numCustomers; c1 ++) {
+                for (int c2 = c1 + 1; c2 < problem.numCustomers; c2 ++) {
+                    sameVehicle.add(cp.eq(whichVehicle[c1-1], whichVehicle[c2-1]));
+                    pairDistances.add((int) problem.dist(c1, c2));
+                }
+            }
+        }
+
+        int[] weights = new int[pairDistances.size()];
+        for (int i = 0; i < weights.length; i ++) {
+            weights[i] = pairDistances.get(i);
         }
+        IloIntExpr wanderingTrucks = cp.prod(weights, sameVehicle.toArray(new IloIntExpr[0]));
 
         cp.add(cp.minimize(wanderingTrucks));
 //        cp.add(cp.le(wanderingTrucks, 4000));
@@ -325,18 +277,15 @@ public class CPInstance {
 
         // Solves
         Optional<Solution> result;
-        if (cp.solve()) {
-            List<List<Integer>> newBins = new ArrayList<>();
-            for (int v = 0; v < problem.numVehicles; v ++) {
-                newBins.add(new ArrayList<>());
-            }
-
+        if (solve(cp)) {
+            int[] customers = new int[problem.numCustomers - 1];
+            int[] binOfCustomer = new int[problem.numCustomers - 1];
             for (int c = 1; c < problem.numCustomers; c ++) {
-                int bin = (int) cp.getValue(whichVehicle[c - 1]);
-                newBins.get(bin).add(c);
+                customers[c - 1] = c;
+                binOfCustomer[c - 1] = (int) cp.getValue(whichVehicle[c - 1]);
             }
 
-            result = Optional.of(new Solution(problem, newBins));
+            result = Optional.of(new Solution(problem, Routes.fromAssignment(problem.numVehicles, customers, binOfCustomer)));
         } else {
             result = Optional.empty();
         }
@@ -344,12 +293,10 @@ public class CPInstance {
         return result;
     }
 
-    public List<Integer> solveTSP(List<Integer> bin) throws IloException {
-        start();
-
-        int[] binValues = bin.stream().mapToInt(Integer::intValue).toArray();
+    public int[] solveTSP(int[] bin) throws IloException {
+        IloCP cp = start(Rng.cpSeed(bin));
 
-        IloIntVar[] vars = cp.intVarArray(bin.size(), binValues, "TSP");
+        IloIntVar[] vars = cp.intVarArray(bin.length, bin, "TSP");
 
         cp.add(cp.allDiff(vars));
 
@@ -362,32 +309,31 @@ public class CPInstance {
         for (int i = 0; i < vars.length; i ++) {
             IloNumExpr newX = cp.element(problem.xCoordOfCustomer, vars[i]);
             IloNumExpr newY = cp.element(problem.yCoordOfCustomer, vars[i]);
-            cost = cp.sum(cost, distance(currX, currY, newX, newY));
+            cost = cp.sum(cost, distance(cp, currX, currY, newX, newY));
             currX = newX;
             currY = newY;
         }
 
-        cost = cp.sum(cost, distance(currX, currY, startX, startY));
+        cost = cp.sum(cost, distance(cp, currX, currY, startX, startY));
         cp.addMinimize(cost);
 
         cp.setParameter(IloCP.DoubleParam.TimeLimit, Settings.tspSearchTime);
 
-        List<Integer> result;
-        if (cp.solve()) {
-            result = new ArrayList<>();
+        int[] result;
+        if (solve(cp)) {
+            result = new int[vars.length];
             for (int i = 0; i < vars.length; i ++) {
-                result.add((int) cp.getValue(vars[i]));
+                result[i] = (int) cp.getValue(vars[i]);
             }
         } else {
-            System.err.println("TSP was unsat.");
-            System.exit(1);
+            Log.fatal("TSP was unsat for {} customers.", bin.length);
             result = null;
         }
         cp.end();
         return result;
     }
 
-    private IloNumExpr distance(IloNumExpr x1, IloNumExpr y1, IloNumExpr x2, IloNumExpr y2) throws IloException {
+    private IloNumExpr distance(IloCP cp, IloNumExpr x1, IloNumExpr y1, IloNumExpr x2, IloNumExpr y2) throws IloException {
         IloNumExpr oneHalf = cp.sum(cp.numExpr(), 0.5);
         return cp.power(cp.sum(cp.square(cp.diff(x2, x1)), cp.square(cp.diff(y2, y1))), oneHalf);
     }
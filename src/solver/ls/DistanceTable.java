@@ -0,0 +1,110 @@
+package solver.ls;
+
+/**
+ * Euclidean distances between customers, precomputed once per instance.
+ *
+ * The storage is picked by size: a flat double matrix while it fits in the
+ * memory budget, then an upper-triangular float table, and past that the
+ * distances are computed from the coordinates on every lookup.
+ */
+public abstract class DistanceTable {
+    protected final double[] xCoord;
+    protected final double[] yCoord;
+
+    private DistanceTable(double[] xCoord, double[] yCoord) {
+        this.xCoord = xCoord;
+        this.yCoord = yCoord;
+    }
+
+    abstract double get(int loc0, int loc1);
+
+    abstract String getKind();
+
+    public static DistanceTable build(double[] xCoord, double[] yCoord, long maxBytes) {
+        long n = xCoord.length;
+        long denseEntries = n * n;
+        long triangularEntries = n * (n - 1) / 2;
+        if (denseEntries * Double.BYTES <= maxBytes && denseEntries <= Integer.MAX_VALUE) {
+            return new Dense(xCoord, yCoord);
+        } else if (triangularEntries * Float.BYTES <= maxBytes && triangularEntries <= Integer.MAX_VALUE) {
+            return new Triangular(xCoord, yCoord);
+        } else {
+            return new OnTheFly(xCoord, yCoord);
+        }
+    }
+
+    protected double compute(int loc0, int loc1) {
+        return Utils.dist(xCoord[loc0], yCoord[loc0], xCoord[loc1], yCoord[loc1]);
+    }
+
+    private static class Dense extends DistanceTable {
+        private final int n;
+        private final double[] table;
+
+        Dense(double[] xCoord, double[] yCoord) {
+            super(xCoord, yCoord);
+            this.n = xCoord.length;
+            this.table = new double[n * n];
+            for (int i = 0; i < n; i ++) {
+                for (int j = i + 1; j < n; j ++) {
+                    double dist = compute(i, j);
+                    table[i * n + j] = dist;
+                    table[j * n + i] = dist;
+                }
+            }
+        }
+
+        @Override
+        double get(int loc0, int loc1) {
+            return table[loc0 * n + loc1];
+        }
+
+        @Override
+        String getKind() { return "dense"; }
+    }
+
+    private static class Triangular extends DistanceTable {
+        private final int n;
+        private final float[] table;
+
+        Triangular(double[] xCoord, double[] yCoord) {
+            super(xCoord, yCoord);
+            this.n = xCoord.length;
+            this.table = new float[(int) ((long) n * (n - 1) / 2)];
+            int k = 0;
+            for (int i = 0; i < n; i ++) {
+                for (int j = i + 1; j < n; j ++) {
+                    table[k++] = (float) compute(i, j);
+                }
+            }
+        }
+
+        @Override
+        double get(int loc0, int loc1) {
+            if (loc0 == loc1) {
+                return 0;
+            }
+            int i = Math.min(loc0, loc1);
+            int j = Math.max(loc0, loc1);
+            // Row i starts after the rows 0..i-1 of lengths n-1, n-2, ..., n-i
+            return table[(int) ((long) i * (2 * n - i - 1) / 2) + (j - i - 1)];
+        }
+
+        @Override
+        String getKind() { return "triangular"; }
+    }
+
+    private static class OnTheFly extends DistanceTable {
+        OnTheFly(double[] xCoord, double[] yCoord) {
+            super(xCoord, yCoord);
+        }
+
+        @Override
+        double get(int loc0, int loc1) {
+            return compute(loc0, loc1);
+        }
+
+        @Override
+        String getKind() { return "onTheFly"; }
+    }
+}
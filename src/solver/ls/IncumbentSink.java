@@ -0,0 +1,77 @@
+package solver.ls;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Where new incumbents go as the search finds them, as result lines in the same
+ * format as the final line of a run. The line is only formatted by sinks that
+ * write it.
+ */
+public interface IncumbentSink {
+    enum Kind {
+        none,
+        stdout,
+        file
+    }
+
+    void publish(Supplier<String> line, Solution solution);
+
+    /**
+     * The sink chosen by incumbentSink and incumbentFile, if any.
+     */
+    static IncumbentSink fromSettings() {
+        switch (Settings.incumbentSink) {
+            case none:
+                return (line, solution) -> { };
+            case stdout:
+                return stdout();
+            case file:
+                if (Settings.incumbentFile == null) {
+                    System.err.println("incumbentSink file needs -incumbentFile");
+                    System.exit(1);
+                }
+                return file(Settings.incumbentFile);
+            default:
+                System.err.println("Unhandled incumbentSink: " + Settings.incumbentSink);
+                System.exit(1);
+                return null;
+        }
+    }
+
+    static IncumbentSink stdout() {
+        return (line, solution) -> System.out.println(line.get());
+    }
+
+    /**
+     * Appends every line to fileName and flushes it, so a killed run leaves every
+     * incumbent up to the last one in the file.
+     */
+    static IncumbentSink file(String fileName) {
+        PrintWriter out;
+        try {
+            out = new PrintWriter(Files.newBufferedWriter(Paths.get(fileName),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE));
+        } catch (IOException e) {
+            System.err.println("Error: opening " + fileName + "\n" + e.getMessage());
+            System.exit(1);
+            return null;
+        }
+        return (line, solution) -> {
+            String text = line.get();
+            synchronized (out) {
+                out.println(text);
+                out.flush();
+            }
+        };
+    }
+
+    static IncumbentSink callback(Consumer<Solution> callback) {
+        return (line, solution) -> callback.accept(solution);
+    }
+}
@@ -0,0 +1,280 @@
+package solver.ls;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Contents of a .vrp file: a line with the number of customers, vehicles and the
+ * vehicle capacity, then one line of demand, x and y per customer, depot first.
+ *
+ * The text is read through a memory-mapped tokenizer. With instanceCache, a binary
+ * sidecar next to the file holds the parsed contents and derived data, and is used
+ * instead of the text as long as the text file's size and modification time still
+ * match the ones recorded in it.
+ */
+public class InstanceFile {
+    private static final int MAGIC = 0x56525042; // "VRPB"
+    private static final int VERSION = 1;
+    private static final String CACHE_SUFFIX = ".bin";
+
+    int numCustomers;
+    int numVehicles;
+    int vehicleCapacity;
+    int[] demandOfCustomer;
+    double[] xCoordOfCustomer;
+    double[] yCoordOfCustomer;
+    int maxCustomersPerVehicle;
+
+    private InstanceFile() {
+    }
+
+    public static InstanceFile load(String fileName) throws IOException {
+        Path source = Paths.get(fileName);
+        if (!Settings.instanceCache) {
+            return parse(source);
+        }
+
+        Path cache = Paths.get(fileName + CACHE_SUFFIX);
+        Optional<InstanceFile> cached = readCache(cache, source);
+        if (cached.isPresent()) {
+            Settings.debug(1, "Instance loaded from " + cache);
+            return cached.get();
+        }
+
+        InstanceFile instance = parse(source);
+        try {
+            instance.writeCache(cache, source);
+        } catch (IOException e) {
+            // The cache is only an optimization, the parsed instance is still good
+            Settings.debug(1, "Could not write instance cache " + cache + ": " + e.getMessage());
+        }
+        return instance;
+    }
+
+    static InstanceFile parse(Path source) throws IOException {
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            Tokenizer read = new Tokenizer(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+
+            InstanceFile instance = new InstanceFile();
+            instance.numCustomers = read.nextInt();
+            instance.numVehicles = read.nextInt();
+            instance.vehicleCapacity = read.nextInt();
+
+            instance.demandOfCustomer = new int[instance.numCustomers];
+            instance.xCoordOfCustomer = new double[instance.numCustomers];
+            instance.yCoordOfCustomer = new double[instance.numCustomers];
+            for (int i = 0; i < instance.numCustomers; i ++) {
+                instance.demandOfCustomer[i] = read.nextInt();
+                instance.xCoordOfCustomer[i] = read.nextDouble();
+                instance.yCoordOfCustomer[i] = read.nextDouble();
+            }
+
+            instance.setUpDerived();
+            return instance;
+        }
+    }
+
+    /**
+     * Maximum number of customers a vehicle can deliver.
+     */
+    private void setUpDerived() {
+        int[] sortedDemands = Arrays.copyOf(demandOfCustomer, demandOfCustomer.length);
+        Arrays.sort(sortedDemands);
+        maxCustomersPerVehicle = 0;
+        int totalDemand = 0;
+        for (int c = 0; c < numCustomers; c ++) {
+            totalDemand += sortedDemands[c];
+            if (totalDemand > vehicleCapacity) {
+                break;
+            }
+            maxCustomersPerVehicle++;
+        }
+    }
+
+    private static Optional<InstanceFile> readCache(Path cache, Path source) {
+        if (!Files.isRegularFile(cache)) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.remaining() < 40 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                    || buffer.getLong() != Files.size(source)
+                    || buffer.getLong() != Files.getLastModifiedTime(source).toMillis()) {
+                return Optional.empty();
+            }
+
+            InstanceFile instance = new InstanceFile();
+            instance.numCustomers = buffer.getInt();
+            instance.numVehicles = buffer.getInt();
+            instance.vehicleCapacity = buffer.getInt();
+            instance.maxCustomersPerVehicle = buffer.getInt();
+            if (instance.numCustomers < 0 || buffer.remaining() != (long) instance.numCustomers * 20) {
+                return Optional.empty();
+            }
+
+            instance.demandOfCustomer = new int[instance.numCustomers];
+            instance.xCoordOfCustomer = new double[instance.numCustomers];
+            instance.yCoordOfCustomer = new double[instance.numCustomers];
+            buffer.asIntBuffer().get(instance.demandOfCustomer);
+            buffer.position(buffer.position() + 4 * instance.numCustomers);
+            buffer.asDoubleBuffer().get(instance.xCoordOfCustomer);
+            buffer.position(buffer.position() + 8 * instance.numCustomers);
+            buffer.asDoubleBuffer().get(instance.yCoordOfCustomer);
+            return Optional.of(instance);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Writes the sidecar to a temporary file first, so readers never see half of one.
+     */
+    private void writeCache(Path cache, Path source) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(40 + 20 * numCustomers).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(Files.size(source));
+        buffer.putLong(Files.getLastModifiedTime(source).toMillis());
+        buffer.putInt(numCustomers);
+        buffer.putInt(numVehicles);
+        buffer.putInt(vehicleCapacity);
+        buffer.putInt(maxCustomersPerVehicle);
+        for (int demand : demandOfCustomer) {
+            buffer.putInt(demand);
+        }
+        for (double x : xCoordOfCustomer) {
+            buffer.putDouble(x);
+        }
+        for (double y : yCoordOfCustomer) {
+            buffer.putDouble(y);
+        }
+        buffer.flip();
+
+        Path temp = Files.createTempFile(cache.toAbsolutePath().getParent(), cache.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Whitespace separated numbers straight from the mapped bytes.
+     */
+    private static class Tokenizer {
+        private final MappedByteBuffer buffer;
+        private final byte[] token = new byte[64];
+        private int length;
+
+        Tokenizer(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private void next() throws IOException {
+            while (buffer.hasRemaining() && buffer.get(buffer.position()) <= ' ') {
+                buffer.get();
+            }
+            length = 0;
+            while (buffer.hasRemaining() && buffer.get(buffer.position()) > ' ') {
+                if (length == token.length) {
+                    throw new IOException("Token too long at byte " + buffer.position());
+                }
+                token[length ++] = buffer.get();
+            }
+            if (length == 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+
+        int nextInt() throws IOException {
+            next();
+            int i = 0;
+            boolean negative = token[0] == '-';
+            if (negative || token[0] == '+') {
+                i ++;
+            }
+            if (i == length) {
+                throw badToken("integer");
+            }
+            int value = 0;
+            for (; i < length; i ++) {
+                int digit = token[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    throw badToken("integer");
+                }
+                value = value * 10 + digit;
+            }
+            return negative ? -value : value;
+        }
+
+        /**
+         * Plain decimals with up to 15 significant digits are exact as a long divided
+         * by a power of ten; anything else goes through Double.parseDouble.
+         */
+        double nextDouble() throws IOException {
+            next();
+            int i = 0;
+            boolean negative = token[0] == '-';
+            if (negative || token[0] == '+') {
+                i ++;
+            }
+            long mantissa = 0;
+            int numDigits = 0;
+            int decimals = -1;
+            for (; i < length; i ++) {
+                byte b = token[i];
+                if (b == '.' && decimals < 0) {
+                    decimals = 0;
+                } else if (b >= '0' && b <= '9' && numDigits < 15) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    numDigits ++;
+                    if (decimals >= 0) {
+                        decimals ++;
+                    }
+                } else {
+                    return slowDouble();
+                }
+            }
+            if (numDigits == 0) {
+                throw badToken("number");
+            }
+            double value = decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+            return negative ? -value : value;
+        }
+
+        private double slowDouble() throws IOException {
+            try {
+                return Double.parseDouble(new String(token, 0, length, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                throw badToken("number");
+            }
+        }
+
+        private IOException badToken(String expected) {
+            return new IOException("Expected " + expected + " but found \""
+                    + new String(token, 0, length, StandardCharsets.US_ASCII)
+                    + "\" before byte " + buffer.position());
+        }
+
+        private static final double[] POWERS_OF_TEN = {
+                1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+        };
+    }
+}
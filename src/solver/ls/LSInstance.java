@@ -1,6 +1,11 @@
 package solver.ls;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class LSInstance {
     private VRPInstance problem;
@@ -10,7 +15,18 @@ public class LSInstance {
     }
 
     public Solution solve(Solution feasible) {
+        if (Settings.lsThreads > 1) {
+            return solvePortfolio(feasible, Settings.lsThreads);
+        }
+
         VRPLocalSearch vrpLS = new VRPLocalSearch(problem, feasible.getPaths());
+        vrpLS.setOnNewBest(this::publishBest);
+        VRPState solution = search(vrpLS);
+        Routes paths = solution.getPaths();
+        return new Solution(problem, paths);
+    }
+
+    private VRPState search(VRPLocalSearch vrpLS) {
         VRPState solution = null;
         switch (Settings.vrpLimitBy) {
             case dist:
@@ -23,10 +39,84 @@ public class LSInstance {
                 solution = vrpLS.search(Settings.vrpSearchDist, Settings.vrpSearchTime);
                 break;
             default:
-                System.err.println("Unhandled vrpLimitBy: " + Settings.vrpLimitBy);
-                System.exit(1);
+                Log.fatal("Unhandled vrpLimitBy: {}", Settings.vrpLimitBy);
+        }
+        return solution;
+    }
+
+    private void publishBest(VRPState state) {
+        problem.publishBest(new Solution(problem, state.getPaths()));
+    }
+
+    /**
+     * Runs numWorkers independent searches from the feasible solution, each with its
+     * own random stream derived from the seed and its worker index, and returns the
+     * best of them.
+     *
+     * Ties go to the lowest worker index, so the result only depends on what each
+     * worker finds: searches limited by dist are reproducible per thread count.
+     * With lsMixProfiles, odd workers flip lsSearchProcedural.
+     */
+    private Solution solvePortfolio(Solution feasible, int numWorkers) {
+        Incumbent incumbent = new Incumbent();
+        ExecutorService pool = Executors.newFixedThreadPool(numWorkers);
+        try {
+            List<Future<VRPState>> workers = new ArrayList<>();
+            for (int w = 0; w < numWorkers; w ++) {
+                int worker = w;
+                workers.add(pool.submit(() -> {
+                    VRPLocalSearch vrpLS = new VRPLocalSearch(problem, feasible.getPaths());
+                    vrpLS.setRandom(Rng.forWorker(worker));
+                    if (Settings.lsMixProfiles && worker % 2 == 1) {
+                        vrpLS.setSearchProcedural(!Settings.lsSearchProcedural);
+                    }
+                    vrpLS.setOnNewBest(state -> {
+                        incumbent.offer(worker, state);
+                        publishBest(state);
+                    });
+                    return search(vrpLS);
+                }));
+            }
+            for (Future<VRPState> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            // Cut short, e.g. by a deadline: stop the workers and keep what they found
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Portfolio search failed", e);
+        } finally {
+            pool.shutdown();
+        }
+
+        VRPState best = incumbent.getBest();
+        if (best == null) {
+            return feasible;
+        }
+        Settings.debug(1, "Portfolio best from worker " + incumbent.worker);
+        return new Solution(problem, best.getPaths());
+    }
+
+    /**
+     * Best state published by any portfolio worker.
+     */
+    private static class Incumbent {
+        private VRPState best = null;
+        private double value;
+        private int worker;
+
+        synchronized void offer(int worker, VRPState state) {
+            double value = state.getValueRemember();
+            if (best == null || value < this.value || (value == this.value && worker < this.worker)) {
+                this.best = state;
+                this.value = value;
+                this.worker = worker;
+            }
+        }
+
+        synchronized VRPState getBest() {
+            return best;
         }
-        List<List<Integer>> paths = solution.getPaths();
-        return new Solution(problem, paths);
     }
 }
@@ -0,0 +1,179 @@
+package solver.ls;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Diagnostics of the solver, written to stdout by a background thread.
+ *
+ * A message is only kept if its level is at most Settings.verbosity, a check of
+ * one static field. Kept messages are queued with their arguments unformatted;
+ * the writer thread substitutes the arguments for the {} in the message and
+ * writes whole batches of lines at once. Callers in hot loops that would box or
+ * build arguments check enabled first.
+ *
+ * Lines printed directly to System.out may overtake queued ones; flush before
+ * anything that must come after every message, such as the result line.
+ */
+public class Log {
+    private static final int QUEUE_SIZE = 1 << 14;
+    private static final long FLUSH_TIMEOUT_MS = 1000;
+
+    private static final BlockingQueue<Event> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private static volatile Thread writer = null;
+
+    /**
+     * A message and its arguments, or a flush request when flushed is set.
+     */
+    private static class Event {
+        final String message;
+        final Object[] args;
+        final CountDownLatch flushed;
+
+        Event(String message, Object[] args, CountDownLatch flushed) {
+            this.message = message;
+            this.args = args;
+            this.flushed = flushed;
+        }
+    }
+
+    static boolean enabled(int level) {
+        return level <= Settings.verbosity;
+    }
+
+    static void log(int level, String message) {
+        if (enabled(level)) {
+            enqueue(new Event(message, null, null));
+        }
+    }
+
+    static void log(int level, String message, Object arg) {
+        if (enabled(level)) {
+            enqueue(new Event(message, new Object[] { arg }, null));
+        }
+    }
+
+    static void log(int level, String message, Object arg0, Object arg1) {
+        if (enabled(level)) {
+            enqueue(new Event(message, new Object[] { arg0, arg1 }, null));
+        }
+    }
+
+    /**
+     * Logs message whatever the verbosity, flushes and ends the run, for errors it
+     * cannot go on from.
+     */
+    static void fatal(String message, Object arg) {
+        enqueue(new Event(message, new Object[] { arg }, null));
+        flush();
+        System.exit(1);
+    }
+
+    /**
+     * Waits until every message queued so far is written, or for at most a second,
+     * so a stuck stdout cannot hold up shutdown. Also waits on an interrupted
+     * thread, e.g. one printing its result after a deadline, and keeps the interrupt.
+     */
+    static void flush() {
+        if (writer == null) {
+            return;
+        }
+        boolean interrupted = Thread.interrupted();
+        CountDownLatch flushed = new CountDownLatch(1);
+        try {
+            if (queue.offer(new Event(null, null, flushed), FLUSH_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                flushed.await(FLUSH_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            interrupted = true;
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Blocks while the queue is full: losing diagnostics asked for is worse than
+     * slowing down at high verbosity.
+     */
+    private static void enqueue(Event event) {
+        if (writer == null) {
+            startWriter();
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(event);
+                break;
+            } catch (InterruptedException e) {
+                // Keep the interrupt for the search, which uses it to stop
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static synchronized void startWriter() {
+        if (writer != null) {
+            return;
+        }
+        writer = new Thread(Log::write, "log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private static void write() {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+        List<Event> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch);
+            try {
+                for (Event event : batch) {
+                    if (event.flushed == null) {
+                        out.write(format(event.message, event.args));
+                        out.write(System.lineSeparator());
+                    } else {
+                        out.flush();
+                        event.flushed.countDown();
+                    }
+                }
+                out.flush();
+            } catch (IOException e) {
+                // Nowhere left to report it
+            }
+            batch.clear();
+        }
+    }
+
+    private static String format(String message, Object[] args) {
+        if (args == null) {
+            return message;
+        }
+        StringBuilder line = new StringBuilder(message.length() + 16 * args.length);
+        int from = 0;
+        for (Object arg : args) {
+            int at = message.indexOf("{}", from);
+            if (at < 0) {
+                break;
+            }
+            line.append(message, from, at).append(arg);
+            from = at + 2;
+        }
+        return line.append(message, from, message.length()).toString();
+    }
+}
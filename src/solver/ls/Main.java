@@ -2,27 +2,41 @@ package solver.ls;
 
 import ilog.concert.IloException;
 
-import java.io.FileNotFoundException;
-
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Optional;
 
 public class Main {
+    private static final double DEADLINE_GRACE = 2.0;
+
     public static void main(String[] args) {
         System.out.println("TEST");
         if (args.length == 0) {
-            System.out.println("Usage: java Main <file>");
+            System.out.println("Usage: java Main <file or directory>");
             return;
         }
 
         CliArgs parser = new CliArgs(args);
         String input = parser.arg(0);
+        Settings.seed = parser.switchLongValue("-seed", 0L);
         Settings.verbosity = parser.switchIntegerValue("-verbosity", 0);
         Settings.feasibilityOnly = parser.switchBooleanValue("-feasibilityOnly", false);
+        Settings.distTableMaxMB = parser.switchIntegerValue("-distTableMaxMB", 64);
+        Settings.instanceCache = parser.switchBooleanValue("-instanceCache", false);
+
+        Settings.feasibleSearch = Settings.FeasibleSearch.valueOf(parser.switchValue("-feasibleSearch", "cp"));
+        Settings.packingNodeLimit = parser.switchLongValue("-packingNodeLimit", 1000000L);
+        Settings.cpSparsityK = parser.switchIntegerValue("-cpSparsityK", 0);
+        Settings.sectors = parser.switchIntegerValue("-sectors", 0);
 
         Settings.lsTakeFirst = parser.switchBooleanValue("-lsTakeFirst", true);
         Settings.lsSearchProcedural = parser.switchBooleanValue("-lsSearchProcedural", false);
+        Settings.lsThreads = parser.switchIntegerValue("-lsThreads", 1);
+        Settings.lsMixProfiles = parser.switchBooleanValue("-lsMixProfiles", false);
+        Settings.lsScanThreads = parser.switchIntegerValue("-lsScanThreads", 1);
+        Settings.lsScreenMoves = parser.switchBooleanValue("-lsScreenMoves", false);
+        Settings.granularK = parser.switchIntegerValue("-granularK", 0);
 
         Settings.vrpLimitBy = Settings.SearchLimit.valueOf(parser.switchValue("-vrpLimitBy", "time"));
         Settings.vrpSearchDist = parser.switchIntegerValue("-vrpSearchDist", 3);
@@ -32,44 +46,42 @@ public class Main {
         Settings.tspLimitBy = Settings.SearchLimit.valueOf(parser.switchValue("-tspLimitBy", "both"));
         Settings.tspSearchDist = parser.switchIntegerValue("-tspSearchDist", 3);
         Settings.tspSearchTime = parser.switchDoubleValue("-tspSearchTime", 1.0);
+        Settings.tspCacheSize = parser.switchIntegerValue("-tspCacheSize", 100000);
+        Settings.tspThreads = parser.switchIntegerValue("-tspThreads", 1);
 
+        Settings.perturbation = Settings.Perturbation.valueOf(parser.switchValue("-perturbation", "ruinRecreate"));
+        Settings.regretK = parser.switchIntegerValue("-regretK", 2);
         Settings.probRandWalk = parser.switchDoubleValue("-probRandWalk", 0.1);
         Settings.probRandWalkFactor = parser.switchDoubleValue("-probRandWalkFactor", 0.95);
         Settings.randMaxDist = parser.switchDoubleValue("-randMaxDist", 0.6);
 
+        Settings.batchThreads = parser.switchIntegerValue("-batchThreads", 0);
+        Settings.batchTimeLimit = parser.switchDoubleValue("-batchTimeLimit", 300.0);
+        Settings.batchLog = parser.switchValue("-batchLog", null);
+
+        Settings.incumbentSink = IncumbentSink.Kind.valueOf(parser.switchValue("-incumbentSink", "none"));
+        Settings.incumbentFile = parser.switchValue("-incumbentFile", null);
+        Settings.deadline = parser.switchDoubleValue("-deadline", 0.0);
+
         Settings.print();
 
         Path path = Paths.get(input);
-        String filename = path.getFileName().toString();
+        if (Files.isDirectory(path)) {
+            new BatchRunner(Settings.batchThreads, Settings.batchTimeLimit, Settings.batchLog).run(path);
+            return;
+        }
         System.out.println("Instance: " + input);
 
-        try {
-            Timer watch = Timer.totalTimer;
-            watch.start();
-            VRPInstance problem = new VRPInstance(input);
-            Optional<Solution> solutionOpt = problem.solve();
-            watch.stop();
-
-            if (solutionOpt.isPresent()) {
-                Solution solution = solutionOpt.get();
-                assert solution.isWellFormed() : "Solution not well formed: " + solution.toString();
-                assert solution.isFeasible() : "Solution is not feasible: " + solution.toString();
-
-                Timer.printTimers();
-
-                System.out.println("Instance: " + filename +
-                        " Time: " + watch +
-                        " Result: " + solution.getCost() +
-                        " Solution: " + solution.toString()
-                );
-            } else {
-                System.out.println("Instance: " + filename +
-                        " Time: " + watch +
-                        " Result: --" +
-                        " Solution: --"
-                );
-            }
+        String filename = path.getFileName().toString();
+        BestKnown bestKnown = new BestKnown(filename, Timer.totalTimer, IncumbentSink.fromSettings());
+        // SIGTERM, e.g. from timeout in runAll.sh, still reports the best solution found
+        Runtime.getRuntime().addShutdownHook(new Thread(bestKnown::emit));
+        if (Settings.deadline > 0) {
+            startDeadline(Thread.currentThread(), bestKnown, Settings.deadline);
+        }
 
+        try {
+            bestKnown.finish(solve(input, Timer.totalTimer, true, bestKnown));
         } catch (IloException e) {
             System.out.println("CPLEX error: " + e.getMessage());
             if (Settings.verbosity > 0) {
@@ -77,4 +89,79 @@ public class Main {
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Interrupts the solving thread after seconds, so the search returns its best
+     * solution. A thread still busy DEADLINE_GRACE seconds later, e.g. inside CP,
+     * is abandoned: the best known solution is emitted and the JVM exits.
+     */
+    private static void startDeadline(Thread solving, BestKnown bestKnown, double seconds) {
+        Thread deadline = new Thread(() -> {
+            try {
+                Thread.sleep((long) (seconds * 1000));
+                solving.interrupt();
+                Thread.sleep((long) (DEADLINE_GRACE * 1000));
+                bestKnown.emit();
+                System.exit(0);
+            } catch (InterruptedException e) {
+                // Not reached, the thread is never interrupted
+            }
+        }, "deadline");
+        deadline.setDaemon(true);
+        deadline.start();
+    }
+
+    /**
+     * Solves one instance and returns its result line. Every new incumbent on the
+     * way is offered to bestKnown.
+     */
+    static String solve(String input, Timer watch, boolean printStats, BestKnown bestKnown) throws IloException {
+        String filename = Paths.get(input).getFileName().toString();
+
+        watch.start();
+        VRPInstance problem = new VRPInstance(input);
+        problem.setOnNewBest(bestKnown::offer);
+        Optional<Solution> solutionOpt;
+        try {
+            solutionOpt = problem.solve();
+        } finally {
+            // A batch solves many instances in one JVM
+            CPInstance.release(problem);
+        }
+        watch.stop();
+
+        if (solutionOpt.isPresent()) {
+            Solution solution = solutionOpt.get();
+            assert solution.isWellFormed() : "Solution not well formed: " + solution.toString();
+            assert solution.isFeasible() : "Solution is not feasible: " + solution.toString();
+
+            if (printStats) {
+                Log.flush();
+                Timer.printTimers();
+                if (problem.tspCache != null) {
+                    System.out.println("TSP cache: " + problem.tspCache);
+                }
+                System.out.println("Metrics: " + Metrics.summary());
+            }
+        }
+        return resultLine(filename, watch, solutionOpt);
+    }
+
+    /**
+     * The line runAll.sh records for a run: "--" in place of a missing solution.
+     */
+    static String resultLine(String filename, Timer watch, Optional<Solution> solutionOpt) {
+        if (solutionOpt.isPresent()) {
+            Solution solution = solutionOpt.get();
+            return "Instance: " + filename +
+                    " Time: " + watch +
+                    " Result: " + solution.getCost() +
+                    " Solution: " + solution.toString();
+        } else {
+            return "Instance: " + filename +
+                    " Time: " + watch +
+                    " Result: --" +
+                    " Solution: --";
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package solver.ls;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Event counts and call latencies of the search, cheap enough to always record.
+ *
+ * Everything is recorded into LongAdders, which spread contended updates over
+ * cells of their own, so threads never wait on each other and nothing is kept
+ * per thread. Latencies go into histograms with one bucket per power of two
+ * nanoseconds.
+ *
+ * Everything is counted for the whole process and never reset: a single run
+ * reports its own metrics, while a batch, whose instances run concurrently,
+ * only reports totals over all of its instances once they are done.
+ */
+public class Metrics {
+    enum Counter {
+        statesEvaluated,
+        neighborsGenerated,
+        improvements,
+        perturbations,
+        perturbationFallbacks,
+        tspCacheHits,
+        tspCacheMisses,
+        tspSolves,
+        cpCalls
+    }
+
+    enum Latency {
+        tsp,
+        cp
+    }
+
+    private static final int NUM_BUCKETS = 64;
+
+    private static final LongAdder[] counts = adders(Counter.values().length);
+    private static final LongAdder[][] buckets = new LongAdder[Latency.values().length][];
+    private static final LongAdder[] totalNanos = adders(Latency.values().length);
+    private static final LongAccumulator[] maxNanos = new LongAccumulator[Latency.values().length];
+
+    static {
+        for (int l = 0; l < buckets.length; l ++) {
+            buckets[l] = adders(NUM_BUCKETS);
+            maxNanos[l] = new LongAccumulator(Math::max, 0);
+        }
+    }
+
+    private static LongAdder[] adders(int length) {
+        LongAdder[] adders = new LongAdder[length];
+        for (int i = 0; i < length; i ++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    static void count(Counter counter) {
+        counts[counter.ordinal()].increment();
+    }
+
+    /**
+     * Start time for record, so callers need not call System.nanoTime themselves.
+     */
+    static long start() {
+        return System.nanoTime();
+    }
+
+    static void record(Latency latency, long startNanos) {
+        long nanos = Math.max(0, System.nanoTime() - startNanos);
+        int l = latency.ordinal();
+        buckets[l][63 - Long.numberOfLeadingZeros(nanos | 1)].increment();
+        totalNanos[l].add(nanos);
+        maxNanos[l].accumulate(nanos);
+    }
+
+    /**
+     * One line of JSON with every counter, and the count, total, upper bound of the
+     * median, 90th and 99th percentile bucket and maximum of every latency in ms.
+     * Only exact once the recording threads are done, e.g. after the search has
+     * returned.
+     */
+    public static String summary() {
+        StringBuilder json = new StringBuilder("{\"counters\":{");
+        for (Counter counter : Counter.values()) {
+            if (counter.ordinal() > 0) {
+                json.append(',');
+            }
+            json.append('"').append(counter).append("\":").append(counts[counter.ordinal()].sum());
+        }
+        json.append("},\"latencies\":{");
+        for (Latency latency : Latency.values()) {
+            int l = latency.ordinal();
+            long[] histogram = new long[NUM_BUCKETS];
+            long count = 0;
+            for (int b = 0; b < NUM_BUCKETS; b ++) {
+                histogram[b] = buckets[l][b].sum();
+                count += histogram[b];
+            }
+            if (l > 0) {
+                json.append(',');
+            }
+            json.append('"').append(latency).append("\":{\"count\":").append(count)
+                    .append(",\"totalMs\":").append(ms(totalNanos[l].sum()))
+                    .append(",\"p50Ms\":").append(ms(percentile(histogram, count, 0.5)))
+                    .append(",\"p90Ms\":").append(ms(percentile(histogram, count, 0.9)))
+                    .append(",\"p99Ms\":").append(ms(percentile(histogram, count, 0.99)))
+                    .append(",\"maxMs\":").append(ms(maxNanos[l].get()))
+                    .append('}');
+        }
+        return json.append("}}").toString();
+    }
+
+    /**
+     * Upper bound of the bucket holding the given fraction of the calls.
+     */
+    private static long percentile(long[] buckets, long count, double fraction) {
+        long rank = (long) Math.ceil(count * fraction);
+        long seen = 0;
+        for (int b = 0; b < NUM_BUCKETS; b ++) {
+            seen += buckets[b];
+            if (seen >= rank && seen > 0) {
+                return b >= 62 ? Long.MAX_VALUE : (2L << b) - 1;
+            }
+        }
+        return 0;
+    }
+
+    private static String ms(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+}
@@ -0,0 +1,102 @@
+package solver.ls;
+
+import java.util.Optional;
+
+/**
+ * A change to a state that leads to one of its neighbors.
+ *
+ * Neighborhoods hand out moves, which only hold a few indices into the state they
+ * were generated from. A move's value is computed against that state without
+ * building the neighbor; materialize builds it, which the search only does for
+ * moves it accepts. Moves of a copy of a state can also be applied to the copy in
+ * place and undone again, which is how chains of moves are walked.
+ *
+ * A move is only good while its state is as it was when the move was generated:
+ * applying or undoing another move of the same state invalidates it.
+ */
+abstract class Move<T extends Comparable<T>> {
+    private Optional<T> value = Optional.empty();
+
+    /**
+     * Value of the neighbor. As with AbstractLocalSearchState.getValue, the result
+     * only has to be exact when it does not exceed best.
+     */
+    abstract T getValue(Optional<T> best);
+
+    /**
+     * Builds the neighbor. Its value is set by materialize if already known.
+     */
+    abstract AbstractLocalSearchState<T> build();
+
+    /**
+     * Changes the move's state into the neighbor, in place.
+     */
+    abstract void apply();
+
+    /**
+     * Reverts the last apply. Moves applied after it must be undone first.
+     */
+    abstract void undo();
+
+    boolean isValid() {
+        return true;
+    }
+
+    T getValueRemember(T best) {
+        return getValueRemember(Optional.of(best));
+    }
+
+    T getValueRemember(Optional<T> best) {
+        if (!value.isPresent()) {
+            value = Optional.of(getValue(best));
+            Metrics.count(Metrics.Counter.statesEvaluated);
+        }
+        return value.get();
+    }
+
+    AbstractLocalSearchState<T> materialize() {
+        AbstractLocalSearchState<T> neighbor = build();
+        if (value.isPresent() && !neighbor.getKnownValue().isPresent()) {
+            neighbor.rememberValue(value.get());
+        }
+        return neighbor;
+    }
+
+    /**
+     * A move to a neighbor that is already built, e.g. a random one. It cannot be
+     * applied in place.
+     */
+    static <T extends Comparable<T>> Move<T> to(AbstractLocalSearchState<T> neighbor) {
+        return new Move<T>() {
+            @Override
+            T getValue(Optional<T> best) {
+                return neighbor.getValueRemember(best);
+            }
+
+            @Override
+            T getValueRemember(Optional<T> best) {
+                return neighbor.getValueRemember(best);
+            }
+
+            @Override
+            AbstractLocalSearchState<T> build() {
+                return neighbor;
+            }
+
+            @Override
+            boolean isValid() {
+                return neighbor.isValid();
+            }
+
+            @Override
+            void apply() {
+                throw new UnsupportedOperationException("Built neighbors cannot be applied in place");
+            }
+
+            @Override
+            void undo() {
+                throw new UnsupportedOperationException("Built neighbors cannot be applied in place");
+            }
+        };
+    }
+}
@@ -0,0 +1,80 @@
+package solver.ls;
+
+/**
+ * Cost changes of local moves on routes, computed from the handful of edges a
+ * move touches instead of walking the whole route.
+ *
+ * Positions outside a route refer to the depot, so every route is treated as
+ * closed at both ends just like TSPState.getValue.
+ */
+public class Moves {
+    static final int DEPOT = 0;
+
+    private static double dist(VRPInstance problem, int loc0, int loc1) {
+        return problem.dist(loc0, loc1);
+    }
+
+    private static int at(int[] route, int pos) {
+        return (pos < 0 || pos >= route.length) ? DEPOT : route[pos];
+    }
+
+    /**
+     * Change in cost from removing the customer at pos and joining its neighbors.
+     */
+    static double removalDelta(VRPInstance problem, int[] route, int pos) {
+        int prev = at(route, pos - 1);
+        int loc = route[pos];
+        int next = at(route, pos + 1);
+        return dist(problem, prev, next) - dist(problem, prev, loc) - dist(problem, loc, next);
+    }
+
+    /**
+     * Change in cost from inserting loc in front of the customer currently at pos.
+     * A pos of route.length appends loc at the end of the route.
+     */
+    static double insertionDelta(VRPInstance problem, int[] route, int pos, int loc) {
+        int prev = at(route, pos - 1);
+        int next = at(route, pos);
+        return dist(problem, prev, loc) + dist(problem, loc, next) - dist(problem, prev, next);
+    }
+
+    /**
+     * Position of the cheapest insertion of loc in route, the first one on ties.
+     * Walks the whole route, so callers cache it per route.
+     */
+    static int bestInsertionPos(VRPInstance problem, int[] route, int loc) {
+        int best = 0;
+        double bestDelta = Double.POSITIVE_INFINITY;
+        for (int pos = 0; pos <= route.length; pos ++) {
+            double delta = insertionDelta(problem, route, pos, loc);
+            if (delta < bestDelta) {
+                bestDelta = delta;
+                best = pos;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Change in cost from exchanging the customers at positions i < j of order.
+     */
+    static double swapDelta(VRPInstance problem, int[] order, int i, int j) {
+        int prevI = at(order, i - 1);
+        int locI = order[i];
+        int nextI = at(order, i + 1);
+        int prevJ = at(order, j - 1);
+        int locJ = order[j];
+        int nextJ = at(order, j + 1);
+
+        if (j == i + 1) {
+            // Edge between the two customers is kept, just traversed the other way
+            return dist(problem, prevI, locJ) + dist(problem, locI, nextJ)
+                    - dist(problem, prevI, locI) - dist(problem, locJ, nextJ);
+        }
+
+        return dist(problem, prevI, locJ) + dist(problem, locJ, nextI)
+                + dist(problem, prevJ, locI) + dist(problem, locI, nextJ)
+                - dist(problem, prevI, locI) - dist(problem, locI, nextI)
+                - dist(problem, prevJ, locJ) - dist(problem, locJ, nextJ);
+    }
+}
@@ -0,0 +1,58 @@
+package solver.ls;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Pull-based cursor over a neighborhood.
+ *
+ * Subclasses keep their loop indices as fields and produce one element per call
+ * to advance(), so enumeration happens entirely on the caller's thread.
+ * A cursor is its own iterator and can therefore only be walked once.
+ */
+public abstract class Neighborhood<T> implements Iterator<T>, Iterable<T> {
+    private T next;
+
+    /**
+     * Produces the next element of the neighborhood, or null once exhausted.
+     */
+    protected abstract T advance();
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            next = advance();
+        }
+        return next != null;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T result = next;
+        next = null;
+        return result;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return this;
+    }
+
+    public static <T> Neighborhood<T> of(T element) {
+        return new Neighborhood<T>() {
+            private boolean done = false;
+
+            @Override
+            protected T advance() {
+                if (done) {
+                    return null;
+                }
+                done = true;
+                return element;
+            }
+        };
+    }
+}
@@ -0,0 +1,81 @@
+package solver.ls;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Random streams of the solver, all derived from Settings.seed.
+ *
+ * Nothing draws from a shared generator. Each VRP search gets the stream of its
+ * worker index, each TSP search the stream of the route it starts from, and each
+ * perturbation splits a stream of its own off its search's. CP engines are seeded
+ * from what they are asked to solve. A run thus only depends on the seed and the
+ * settings, not on which threads happen to do the work.
+ */
+public class Rng {
+    private enum Purpose {
+        worker,
+        route,
+        cp
+    }
+
+    public static SplittableRandom forWorker(int worker) {
+        return new SplittableRandom(derive(Purpose.worker, worker));
+    }
+
+    public static SplittableRandom forRoute(int[] route) {
+        return new SplittableRandom(derive(Purpose.route, hash(route)));
+    }
+
+    /**
+     * Non-negative seed for a CP engine solving the given customers or routes.
+     */
+    public static int cpSeed(int[] key) {
+        return (int) (derive(Purpose.cp, hash(key)) >>> 33);
+    }
+
+    public static int cpSeed(Routes bins) {
+        long h = 1;
+        for (int bin = 0; bin < bins.size(); bin ++) {
+            h = mix(h + hash(bins.get(bin)));
+        }
+        return (int) (derive(Purpose.cp, h) >>> 33);
+    }
+
+    public static int cpSeed(List<Integer> key) {
+        return (int) (derive(Purpose.cp, key.hashCode()) >>> 33);
+    }
+
+    /**
+     * Fisher-Yates shuffle, as Collections.shuffle only takes a Random.
+     */
+    public static <E> void shuffle(List<E> list, SplittableRandom rand) {
+        for (int i = list.size() - 1; i > 0; i --) {
+            int j = rand.nextInt(i + 1);
+            E temp = list.get(i);
+            list.set(i, list.get(j));
+            list.set(j, temp);
+        }
+    }
+
+    private static long derive(Purpose purpose, long key) {
+        return mix(mix(Settings.seed ^ (purpose.ordinal() + 1) * 0x9E3779B97F4A7C15L) + key);
+    }
+
+    private static long hash(int[] values) {
+        long h = values.length;
+        for (int value : values) {
+            h = h * 0x100000001B3L + value;
+        }
+        return h;
+    }
+
+    /**
+     * The SplitMix64 finalizer.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,145 @@
+package solver.ls;
+
+import java.util.Arrays;
+
+/**
+ * The routes of a VRP solution as one int array per route, in visiting order.
+ *
+ * Route arrays are never modified once stored, so copies only duplicate the outer
+ * array and share every route they do not replace. The customer to route/position
+ * index is built lazily and dropped whenever a route is replaced.
+ */
+public class Routes {
+    private final int[][] routes;
+
+    // Published after posOfCustomer, so states shared between scan threads can build it
+    private volatile int[] routeOfCustomer;
+    private int[] posOfCustomer;
+
+    public Routes(int[][] routes) {
+        this.routes = routes;
+    }
+
+    public static Routes empty(int numRoutes) {
+        int[][] routes = new int[numRoutes][];
+        Arrays.fill(routes, new int[0]);
+        return new Routes(routes);
+    }
+
+    /**
+     * Routes from an assignment of customers[i] to route routeOf[i], keeping the
+     * order of customers within each route.
+     */
+    public static Routes fromAssignment(int numRoutes, int[] customers, int[] routeOf) {
+        int[] sizes = new int[numRoutes];
+        for (int route : routeOf) {
+            sizes[route] ++;
+        }
+        int[][] routes = new int[numRoutes][];
+        for (int r = 0; r < numRoutes; r ++) {
+            routes[r] = new int[sizes[r]];
+            sizes[r] = 0;
+        }
+        for (int i = 0; i < customers.length; i ++) {
+            routes[routeOf[i]][sizes[routeOf[i]] ++] = customers[i];
+        }
+        return new Routes(routes);
+    }
+
+    public static Routes concat(Routes... parts) {
+        int numRoutes = 0;
+        for (Routes part : parts) {
+            numRoutes += part.size();
+        }
+        int[][] routes = new int[numRoutes][];
+        int r = 0;
+        for (Routes part : parts) {
+            System.arraycopy(part.routes, 0, routes, r, part.size());
+            r += part.size();
+        }
+        return new Routes(routes);
+    }
+
+    public int size() {
+        return routes.length;
+    }
+
+    /**
+     * The customers of a route. The array is shared and must not be modified.
+     */
+    public int[] get(int route) {
+        return routes[route];
+    }
+
+    public void set(int route, int[] customers) {
+        routes[route] = customers;
+        routeOfCustomer = null;
+        posOfCustomer = null;
+    }
+
+    public Routes copy() {
+        return new Routes(routes.clone());
+    }
+
+    /**
+     * Route holding a customer, or -1 if it is not on any route.
+     */
+    public int routeOf(int customer) {
+        int[] routeOfCustomer = buildIndex();
+        return customer < routeOfCustomer.length ? routeOfCustomer[customer] : -1;
+    }
+
+    public int posOf(int customer) {
+        buildIndex();
+        return customer < posOfCustomer.length ? posOfCustomer[customer] : -1;
+    }
+
+    private int[] buildIndex() {
+        if (this.routeOfCustomer != null) {
+            return this.routeOfCustomer;
+        }
+        int maxCustomer = 0;
+        for (int[] route : routes) {
+            for (int loc : route) {
+                maxCustomer = Math.max(maxCustomer, loc);
+            }
+        }
+        int[] routeOfCustomer = new int[maxCustomer + 1];
+        int[] posOfCustomer = new int[maxCustomer + 1];
+        Arrays.fill(routeOfCustomer, -1);
+        Arrays.fill(posOfCustomer, -1);
+        for (int r = 0; r < routes.length; r ++) {
+            for (int pos = 0; pos < routes[r].length; pos ++) {
+                routeOfCustomer[routes[r][pos]] = r;
+                posOfCustomer[routes[r][pos]] = pos;
+            }
+        }
+        this.posOfCustomer = posOfCustomer;
+        this.routeOfCustomer = routeOfCustomer;
+        return routeOfCustomer;
+    }
+
+    static int[] remove(int[] route, int pos) {
+        int[] result = new int[route.length - 1];
+        System.arraycopy(route, 0, result, 0, pos);
+        System.arraycopy(route, pos + 1, result, pos, route.length - pos - 1);
+        return result;
+    }
+
+    static int[] insert(int[] route, int pos, int loc) {
+        int[] result = new int[route.length + 1];
+        System.arraycopy(route, 0, result, 0, pos);
+        result[pos] = loc;
+        System.arraycopy(route, pos, result, pos + 1, route.length - pos);
+        return result;
+    }
+
+    static int[] append(int[] route, int loc) {
+        return insert(route, route.length, loc);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.deepToString(routes);
+    }
+}
@@ -0,0 +1,259 @@
+package solver.ls;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+
+/**
+ * Ruin-and-recreate perturbation of VRP routes without CP.
+ *
+ * Ruin removes customers picked at random, around a random seed customer (radial)
+ * or whole routes at a time. Recreate puts them back one by one at their cheapest
+ * position on a route with room for them, either greedily taking the cheapest
+ * insertion overall, or taking the customer with the largest regret, i.e. the most
+ * to lose from not getting its best route among its regretK best. Routes that are
+ * not touched keep their arrays, so states can tell which routes changed.
+ *
+ * Tight capacities can leave a recreated customer without room. The ruin is then
+ * retried, halving its size every other attempt, and as a last resort a single
+ * route is ruined, which always fits back.
+ */
+public class RuinRecreate {
+    private static final double UNPLACEABLE = 1e12;
+    private static final int MAX_ATTEMPTS = 10;
+
+    private VRPInstance problem;
+    private SplittableRandom rand;
+
+    public RuinRecreate(VRPInstance problem, SplittableRandom rand) {
+        this.problem = problem;
+        this.rand = rand;
+    }
+
+    /**
+     * Routes with up to numRemoved customers ruined and recreated.
+     */
+    public Routes perturb(Routes paths, int numRemoved) {
+        int size = numRemoved;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt ++) {
+            Optional<Routes> result = tryPerturb(paths, ruin(paths, size));
+            if (result.isPresent()) {
+                return result.get();
+            }
+            if (attempt % 2 == 1) {
+                size = Math.max(1, size / 2);
+            }
+        }
+
+        // The emptied route has room for all of its customers, whichever go elsewhere
+        Metrics.count(Metrics.Counter.perturbationFallbacks);
+        Optional<Routes> result = tryPerturb(paths, routeRemoval(paths, 1));
+        assert result.isPresent() : "Customers of a single route did not fit back";
+        return result.orElse(paths);
+    }
+
+    private boolean[] ruin(Routes paths, int numRemoved) {
+        switch (rand.nextInt(3)) {
+            case 0:
+                return randomRemoval(paths, numRemoved);
+            case 1:
+                return radialRemoval(numRemoved);
+            default:
+                return routeRemoval(paths, numRemoved);
+        }
+    }
+
+    private Optional<Routes> tryPerturb(Routes paths, boolean[] removed) {
+        Routes bins = paths.copy();
+        List<Integer> unassigned = new ArrayList<>();
+        for (int bin = 0; bin < bins.size(); bin ++) {
+            int[] route = bins.get(bin);
+            int kept = 0;
+            for (int loc : route) {
+                if (!removed[loc]) {
+                    kept ++;
+                }
+            }
+            if (kept == route.length) {
+                continue;
+            }
+
+            int[] newRoute = new int[kept];
+            kept = 0;
+            for (int loc : route) {
+                if (removed[loc]) {
+                    unassigned.add(loc);
+                } else {
+                    newRoute[kept ++] = loc;
+                }
+            }
+            bins.set(bin, newRoute);
+        }
+
+        int regretK = rand.nextBoolean() ? Settings.regretK : 1;
+        if (!recreate(bins, unassigned, regretK)) {
+            return Optional.empty();
+        }
+        return Optional.of(bins);
+    }
+
+    private boolean[] randomRemoval(Routes paths, int numRemoved) {
+        List<Integer> customers = new ArrayList<>();
+        for (int bin = 0; bin < paths.size(); bin ++) {
+            for (int loc : paths.get(bin)) {
+                customers.add(loc);
+            }
+        }
+        Rng.shuffle(customers, rand);
+
+        boolean[] removed = new boolean[problem.numCustomers];
+        for (int i = 0; i < Math.min(numRemoved, customers.size()); i ++) {
+            removed[customers.get(i)] = true;
+        }
+        return removed;
+    }
+
+    /**
+     * A random customer and its numRemoved - 1 nearest customers.
+     */
+    private boolean[] radialRemoval(int numRemoved) {
+        boolean[] removed = new boolean[problem.numCustomers];
+        if (problem.numCustomers < 2) {
+            return removed;
+        }
+        int seed = 1 + rand.nextInt(problem.numCustomers - 1);
+
+        // Distance packed above the customer index, as in VRPInstance.findNearest
+        long[] keys = new long[problem.numCustomers - 1];
+        for (int c = 1; c < problem.numCustomers; c ++) {
+            keys[c - 1] = ((long) Float.floatToIntBits((float) problem.dist(seed, c)) << 32) | c;
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < Math.min(numRemoved, keys.length); i ++) {
+            removed[(int) keys[i]] = true;
+        }
+        return removed;
+    }
+
+    /**
+     * Whole random routes until at least numRemoved customers are gone.
+     */
+    private boolean[] routeRemoval(Routes paths, int numRemoved) {
+        List<Integer> bins = new ArrayList<>();
+        for (int bin = 0; bin < paths.size(); bin ++) {
+            if (paths.get(bin).length > 0) {
+                bins.add(bin);
+            }
+        }
+        Rng.shuffle(bins, rand);
+
+        boolean[] removed = new boolean[problem.numCustomers];
+        int count = 0;
+        for (int i = 0; i < bins.size() && count < numRemoved; i ++) {
+            for (int loc : paths.get(bins.get(i))) {
+                removed[loc] = true;
+                count ++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Inserts every unassigned customer, regretK of 1 being plain greedy insertion.
+     * Insertion costs are kept per customer and route and only recomputed for the
+     * route that changed.
+     */
+    private boolean recreate(Routes bins, List<Integer> unassigned, int regretK) {
+        int numBins = bins.size();
+        int[] loads = new int[numBins];
+        for (int bin = 0; bin < numBins; bin ++) {
+            for (int loc : bins.get(bin)) {
+                loads[bin] += problem.demandOfCustomer[loc];
+            }
+        }
+
+        int numLeft = unassigned.size();
+        int[] customers = new int[numLeft];
+        double[][] cost = new double[numLeft][numBins];
+        int[][] pos = new int[numLeft][numBins];
+        for (int u = 0; u < numLeft; u ++) {
+            customers[u] = unassigned.get(u);
+            for (int bin = 0; bin < numBins; bin ++) {
+                updateInsertion(bins.get(bin), loads[bin], customers[u], cost[u], pos[u], bin);
+            }
+        }
+
+        double[] sorted = new double[numBins];
+        while (numLeft > 0) {
+            int bestU = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int u = 0; u < numLeft; u ++) {
+                double first = UNPLACEABLE;
+                double score;
+                if (regretK <= 1) {
+                    for (double c : cost[u]) {
+                        first = Math.min(first, c);
+                    }
+                    score = -first;
+                } else {
+                    System.arraycopy(cost[u], 0, sorted, 0, numBins);
+                    Arrays.sort(sorted);
+                    first = sorted[0];
+                    score = 0;
+                    for (int i = 1; i < Math.min(regretK, numBins); i ++) {
+                        score += sorted[i] - first;
+                    }
+                }
+                if (first >= UNPLACEABLE) {
+                    return false;
+                }
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestU = u;
+                }
+            }
+
+            int bin = 0;
+            for (int b = 1; b < numBins; b ++) {
+                if (cost[bestU][b] < cost[bestU][bin]) {
+                    bin = b;
+                }
+            }
+            int loc = customers[bestU];
+            bins.set(bin, Routes.insert(bins.get(bin), pos[bestU][bin], loc));
+            loads[bin] += problem.demandOfCustomer[loc];
+
+            // Swap the placed customer out with the last one still left
+            numLeft --;
+            customers[bestU] = customers[numLeft];
+            double[] placedCost = cost[bestU];
+            cost[bestU] = cost[numLeft];
+            cost[numLeft] = placedCost;
+            int[] placedPos = pos[bestU];
+            pos[bestU] = pos[numLeft];
+            pos[numLeft] = placedPos;
+
+            for (int u = 0; u < numLeft; u ++) {
+                updateInsertion(bins.get(bin), loads[bin], customers[u], cost[u], pos[u], bin);
+            }
+        }
+        return true;
+    }
+
+    private void updateInsertion(int[] route, int load, int loc, double[] cost, int[] pos, int bin) {
+        if (load + problem.demandOfCustomer[loc] > problem.vehicleCapacity) {
+            cost[bin] = UNPLACEABLE;
+            return;
+        }
+        cost[bin] = Double.POSITIVE_INFINITY;
+        for (int p = 0; p <= route.length; p ++) {
+            double delta = Moves.insertionDelta(problem, route, p, loc);
+            if (delta < cost[bin]) {
+                cost[bin] = delta;
+                pos[bin] = p;
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package solver.ls;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Split of the customers into angular sectors around the depot, for packing each
+ * sector on its own vehicles.
+ *
+ * Customers are ordered by angle starting after the widest empty gap around the
+ * depot. Vehicles are shared out evenly between the sectors, and each sector in turn
+ * sweeps up the next customers for as long as first-fit-decreasing still packs them
+ * onto its vehicles, so every sector but the last is known to be packable. The last
+ * sector takes the remaining customers.
+ */
+public class Sectors {
+    private VRPInstance problem;
+    private List<ArrayList<Integer>> customersOfSector;
+    private int[] vehiclesOfSector;
+
+    public Sectors(VRPInstance problem, int numSectors) {
+        this.problem = problem;
+        this.customersOfSector = split(Math.max(1, Math.min(numSectors, problem.numCustomers - 1)));
+    }
+
+    /**
+     * About four vehicles per sector, and never fewer than the old two-way split.
+     */
+    public static int chooseNumSectors(VRPInstance problem) {
+        if (Settings.sectors > 0) {
+            return Settings.sectors;
+        }
+        return Math.min(problem.numVehicles, Math.max(2, problem.numVehicles / 4));
+    }
+
+    public int size() {
+        return customersOfSector.size();
+    }
+
+    public List<ArrayList<Integer>> getCustomers() {
+        return customersOfSector;
+    }
+
+    private List<ArrayList<Integer>> split(int numSectors) {
+        int numItems = problem.numCustomers - 1;
+        List<ArrayList<Integer>> sectors = new ArrayList<>();
+        if (numItems == 0) {
+            sectors.add(new ArrayList<>());
+            return sectors;
+        }
+
+        double[] angles = new double[problem.numCustomers];
+        for (int c = 1; c < problem.numCustomers; c ++) {
+            angles[c] = Math.atan2(problem.yCoordOfCustomer[c] - problem.yCoordOfCustomer[0],
+                    problem.xCoordOfCustomer[c] - problem.xCoordOfCustomer[0]);
+        }
+        Integer[] byAngle = new Integer[numItems];
+        for (int c = 1; c < problem.numCustomers; c ++) {
+            byAngle[c - 1] = c;
+        }
+        Arrays.sort(byAngle, (c1, c2) -> Double.compare(angles[c1], angles[c2]));
+
+        // Start right after the widest gap, so no sector straddles it
+        int start = 0;
+        double widestGap = -1;
+        for (int i = 0; i < numItems; i ++) {
+            double gap = angles[byAngle[i]] - angles[byAngle[(i + numItems - 1) % numItems]];
+            if (gap <= 0) {
+                gap += 2 * Math.PI;
+            }
+            if (gap > widestGap) {
+                widestGap = gap;
+                start = i;
+            }
+        }
+
+        int[] vehicles = new int[numSectors];
+        for (int v = 0; v < problem.numVehicles; v ++) {
+            vehicles[v % numSectors] ++;
+        }
+
+        ArrayList<Integer> sector = new ArrayList<>();
+        for (int i = 0; i < numItems; i ++) {
+            int c = byAngle[(start + i) % numItems];
+            sector.add(c);
+            boolean isLast = sectors.size() == numSectors - 1;
+            if (!isLast && firstFitDecreasing(sector) > vehicles[sectors.size()]) {
+                sector.remove(sector.size() - 1);
+                sectors.add(sector);
+                sector = new ArrayList<>();
+                sector.add(c);
+            }
+        }
+        sectors.add(sector);
+
+        this.vehiclesOfSector = Arrays.copyOf(vehicles, sectors.size());
+        // Sectors left empty hand their vehicles to the last one
+        for (int s = sectors.size(); s < numSectors; s ++) {
+            vehiclesOfSector[sectors.size() - 1] += vehicles[s];
+        }
+        return sectors;
+    }
+
+    private int firstFitDecreasing(List<Integer> customers) {
+        int[] demands = new int[customers.size()];
+        for (int i = 0; i < demands.length; i ++) {
+            demands[i] = problem.demandOfCustomer[customers.get(i)];
+        }
+        return BinPacker.firstFitDecreasing(demands, problem.vehicleCapacity);
+    }
+
+    /**
+     * Vehicles for each sector, or empty if first-fit-decreasing cannot pack the last
+     * sector, which takes every customer the earlier ones could not.
+     */
+    public Optional<int[]> getVehicles() {
+        int last = size() - 1;
+        if (firstFitDecreasing(customersOfSector.get(last)) > vehiclesOfSector[last]) {
+            return Optional.empty();
+        }
+        return Optional.of(vehiclesOfSector);
+    }
+}
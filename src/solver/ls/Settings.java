@@ -1,12 +1,22 @@
 package solver.ls;
 
-import java.util.Random;
-
 public class Settings {
     // Overall
-    static Random rand = new Random(0);
+    static long seed = 0; // master seed every random stream is derived from, see Rng
     static int verbosity = 0;
     static boolean feasibilityOnly = false;
+    static int distTableMaxMB = 64;
+    static boolean instanceCache = false;
+
+    // CP
+    enum FeasibleSearch {
+        cp,
+        packing
+    }
+    static FeasibleSearch feasibleSearch = FeasibleSearch.cp;
+    static long packingNodeLimit = 1000000;
+    static int cpSparsityK = 0;
+    static int sectors = 0;
 
     // LS
     enum SearchLimit {
@@ -16,6 +26,12 @@ public class Settings {
     }
     static boolean lsTakeFirst = true;
     static boolean lsSearchProcedural = false;
+    static int lsThreads = 1;
+    static boolean lsMixProfiles = false;
+    static int lsScanThreads = 1;
+    // Relocates keep their tours instead of re-solving them, so non-improving ones are screened exactly
+    static boolean lsScreenMoves = false;
+    static int granularK = 0;
 
     // VRP
     static SearchLimit vrpLimitBy = SearchLimit.time;
@@ -26,26 +42,57 @@ public class Settings {
     enum TSPSearch {
         localSearch,
         cp,
-        nearestNeighbor
+        nearestNeighbor,
+        twoOptOrOpt
     }
     static TSPSearch tspSearch = TSPSearch.nearestNeighbor;
     static SearchLimit tspLimitBy = SearchLimit.both;
     static int tspSearchDist = 3;
     static double tspSearchTime = 1.0;
+    static int tspCacheSize = 100000;
+    static int tspThreads = 1;
 
     // Rand Walk
+    enum Perturbation {
+        cp,
+        ruinRecreate
+    }
+    static Perturbation perturbation = Perturbation.ruinRecreate;
+    static int regretK = 2;
     static double probRandWalk = 0.1;
     static double probRandWalkFactor = 0.95;
     static double randMaxDist = 0.6;
 
+    // Batch
+    static int batchThreads = 0;
+    static double batchTimeLimit = 300.0;
+    static String batchLog = null;
+
+    // Anytime
+    static IncumbentSink.Kind incumbentSink = IncumbentSink.Kind.none;
+    static String incumbentFile = null;
+    static double deadline = 0.0; // seconds after start at which to report the best solution, 0 for none
+
     public static void print() {
         System.out.println("Settings:");
+        System.out.println("  Seed: " + seed);
         System.out.println("  Verbosity: " + verbosity);
         System.out.println("  Check feasibility only: " + feasibilityOnly);
+        System.out.println("  distTableMaxMB: " + distTableMaxMB);
+        System.out.println("  instanceCache: " + instanceCache);
         System.out.println("  CP:");
+        System.out.println("    feasibleSearch: " + feasibleSearch);
+        System.out.println("    packingNodeLimit: " + packingNodeLimit);
+        System.out.println("    cpSparsityK: " + cpSparsityK);
+        System.out.println("    sectors: " + sectors);
         System.out.println("  LS:");
         System.out.println("    lsTakeFirst: " + lsTakeFirst);
         System.out.println("    lsSearchProcedural: " + lsSearchProcedural);
+        System.out.println("    lsThreads: " + lsThreads);
+        System.out.println("    lsMixProfiles: " + lsMixProfiles);
+        System.out.println("    lsScanThreads: " + lsScanThreads);
+        System.out.println("    lsScreenMoves: " + lsScreenMoves);
+        System.out.println("    granularK: " + granularK);
         System.out.println("    vrp:");
         System.out.println("      vrpLimitBy: " + vrpLimitBy);
         System.out.println("      vrpSearchDist: " + vrpSearchDist);
@@ -55,15 +102,25 @@ public class Settings {
         System.out.println("      tspLimitBy: " + tspLimitBy);
         System.out.println("      tspSearchDist: " + tspSearchDist);
         System.out.println("      tspSearchTime: " + tspSearchTime);
+        System.out.println("      tspCacheSize: " + tspCacheSize);
+        System.out.println("      tspThreads: " + tspThreads);
         System.out.println("    rand walk:");
+        System.out.println("      perturbation: " + perturbation);
+        System.out.println("      regretK: " + regretK);
         System.out.println("      probRandWalk: " + probRandWalk);
         System.out.println("      probRandWalkFactor: " + probRandWalkFactor);
         System.out.println("      randMaxDist: " + randMaxDist);
+        System.out.println("  Batch:");
+        System.out.println("    batchThreads: " + batchThreads);
+        System.out.println("    batchTimeLimit: " + batchTimeLimit);
+        System.out.println("    batchLog: " + batchLog);
+        System.out.println("  Anytime:");
+        System.out.println("    incumbentSink: " + incumbentSink);
+        System.out.println("    incumbentFile: " + incumbentFile);
+        System.out.println("    deadline: " + deadline);
     }
 
     public static void debug(int priority, String message) {
-        if (Settings.verbosity >= priority) {
-            System.out.println(message);
-        }
+        Log.log(priority, message);
     }
 }
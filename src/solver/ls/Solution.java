@@ -1,20 +1,20 @@
 package solver.ls;
 
-import java.util.*;
+import java.util.Optional;
 
 public class Solution {
     private VRPInstance problem;
-    private List<List<Integer>> paths;
+    private Routes paths;
     private boolean isOptimal;
     private Optional<Double> cost;
     private Optional<Boolean> isWellFormed;
     private Optional<Boolean> isFeasible;
 
-    public Solution(VRPInstance problem, List<List<Integer>> paths) {
+    public Solution(VRPInstance problem, Routes paths) {
         this(problem, paths, false);
     }
 
-    public Solution(VRPInstance problem, List<List<Integer>> paths, boolean isOptimal) {
+    public Solution(VRPInstance problem, Routes paths, boolean isOptimal) {
         this.problem = problem;
         this.paths = paths;
         this.isOptimal = isOptimal;
@@ -32,9 +32,9 @@ public class Solution {
 
         ret.append(isOptimal ? 1 : 0);
 
-        for (List<Integer> path : paths) {
+        for (int bin = 0; bin < paths.size(); bin ++) {
             ret.append(" " + 0);
-            for (int loc : path) {
+            for (int loc : paths.get(bin)) {
                 ret.append(" " + loc);
             }
             ret.append(" " + 0);
@@ -49,18 +49,13 @@ public class Solution {
         } else {
             double cost = 0;
 
-            for (List<Integer> path : paths) {
-                double x = 0, y = 0;
-                for (int loc : path) {
-                    double newX = problem.xCoordOfCustomer[loc];
-                    double newY = problem.yCoordOfCustomer[loc];
-                    double dist = Utils.dist(x, y, newX, newY);
-
-                    cost += dist;
-                    x = newX;
-                    y = newY;
+            for (int bin = 0; bin < paths.size(); bin ++) {
+                int curr = 0;
+                for (int loc : paths.get(bin)) {
+                    cost += problem.exactDist(curr, loc);
+                    curr = loc;
                 }
-                cost += Utils.dist(x, y, 0, 0);
+                cost += problem.exactDist(curr, 0);
             }
 
             this.cost = Optional.of(cost);
@@ -76,20 +71,19 @@ public class Solution {
 
             isWellFormed &= paths.size() == problem.numVehicles;
 
-            Set<Integer> locs = new HashSet<>();
-            for (int i = 1; i < problem.numCustomers; i ++) {
-                locs.add(i);
-            }
-            for (List<Integer> path : paths) {
-                for (int loc : path) {
-                    if (locs.contains(loc)) {
-                        locs.remove(loc);
+            boolean[] visited = new boolean[problem.numCustomers];
+            int numVisited = 0;
+            for (int bin = 0; bin < paths.size(); bin ++) {
+                for (int loc : paths.get(bin)) {
+                    if (loc >= 1 && loc < problem.numCustomers && !visited[loc]) {
+                        visited[loc] = true;
+                        numVisited ++;
                     } else {
                         isWellFormed = false;
                     }
                 }
             }
-            isWellFormed &= locs.isEmpty();
+            isWellFormed &= numVisited == problem.numCustomers - 1;
 
             this.isWellFormed = Optional.of(isWellFormed);
             return isWellFormed;
@@ -103,9 +97,9 @@ public class Solution {
             assert this.isWellFormed() : "Should not be checking feasibility of non-wellformed solution";
             boolean isFeasible = true;
 
-            for (List<Integer> path : paths) {
+            for (int bin = 0; bin < paths.size(); bin ++) {
                 int carry = 0;
-                for (int loc : path) {
+                for (int loc : paths.get(bin)) {
                     carry += problem.demandOfCustomer[loc];
                 }
 
@@ -120,21 +114,15 @@ public class Solution {
         }
     }
 
-    public List<List<Integer>> getPaths(boolean copy) {
+    public Routes getPaths(boolean copy) {
         if (copy) {
-            List<List<Integer>> paths = new ArrayList<>();
-
-            for (List<Integer> path : this.paths) {
-                paths.add(new ArrayList<>(path));
-            }
-
-            return paths;
+            return this.paths.copy();
         } else {
             return this.paths;
         }
     }
 
-    public List<List<Integer>> getPaths() {
+    public Routes getPaths() {
         return getPaths(true);
     }
 
@@ -0,0 +1,158 @@
+package solver.ls;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of solved TSP routes, keyed by the set of customers on the route.
+ *
+ * Keys are the sorted customers of a route together with a 64-bit Zobrist hash of
+ * the set, so lookups never box or build a collection. Entries are spread over
+ * independently locked segments, each evicting its least recently used entry once
+ * it holds its share of the capacity.
+ */
+public class TSPCache {
+    private static final int NUM_SEGMENTS = 16;
+
+    private final long[] customerHashes;
+    private final Segment[] segments;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public TSPCache(int numCustomers, int capacity) {
+        SplittableRandom rand = new SplittableRandom(numCustomers);
+        this.customerHashes = new long[numCustomers];
+        for (int c = 0; c < numCustomers; c ++) {
+            customerHashes[c] = rand.nextLong();
+        }
+
+        this.segments = new Segment[NUM_SEGMENTS];
+        int segmentCapacity = Math.max(1, (capacity + NUM_SEGMENTS - 1) / NUM_SEGMENTS);
+        for (int i = 0; i < NUM_SEGMENTS; i ++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    public static final class Key {
+        private final int[] customers;
+        private final long hash;
+
+        private Key(int[] customers, long hash) {
+            this.customers = customers;
+            this.hash = hash;
+        }
+
+        /**
+         * The customers in ascending order. The array is shared and must not be modified.
+         */
+        public int[] getCustomers() {
+            return customers;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && Arrays.equals(customers, other.customers);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (hash ^ (hash >>> 32));
+        }
+    }
+
+    public Key keyOf(int[] route) {
+        int[] customers = route.clone();
+        Arrays.sort(customers);
+        long hash = 0;
+        for (int loc : customers) {
+            hash ^= customerHashes[loc];
+        }
+        return new Key(customers, hash);
+    }
+
+    public TSPState get(Key key) {
+        TSPState result = segmentOf(key).get(key);
+        if (result == null) {
+            misses.increment();
+            Metrics.count(Metrics.Counter.tspCacheMisses);
+        } else {
+            hits.increment();
+            Metrics.count(Metrics.Counter.tspCacheHits);
+        }
+        return result;
+    }
+
+    public void put(Key key, TSPState solution) {
+        segmentOf(key).put(key, solution);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    private Segment segmentOf(Key key) {
+        return segments[(int) (key.hash >>> 60) & (NUM_SEGMENTS - 1)];
+    }
+
+    @Override
+    public String toString() {
+        return "hits: " + getHits() + " misses: " + getMisses() + " evictions: " + getEvictions() + " size: " + size();
+    }
+
+    private class Segment {
+        private final LinkedHashMap<Key, TSPState> entries;
+
+        Segment(int capacity) {
+            this.entries = new LinkedHashMap<Key, TSPState>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, TSPState> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized TSPState get(Key key) {
+            return entries.get(key);
+        }
+
+        synchronized void put(Key key, TSPState solution) {
+            entries.put(key, solution);
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+}
@@ -2,27 +2,36 @@ package solver.ls;
 
 import ilog.concert.IloException;
 
-import java.util.*;
+import java.util.Arrays;
 
 public class TSPLocalSearch extends AbstractLocalSearch<Double, TSPState> {
     private VRPInstance problem;
-    private List<Integer> locations;
-    private static Map<Set<Integer>, TSPState> solved = new HashMap<>();
+    private int[] locations;
 
-    public TSPLocalSearch(VRPInstance problem, List<Integer> locations) {
+    public TSPLocalSearch(VRPInstance problem, int[] locations) {
         this.problem = problem;
         this.locations = locations;
     }
 
     public TSPState solve() {
-        Set<Integer> bin = new HashSet<>(this.locations);
-        if (solved.containsKey(bin)) {
-            return solved.get(bin);
+        TSPCache solved = problem.tspCache;
+        TSPCache.Key bin = null;
+        if (solved != null && Settings.tspSearch != Settings.TSPSearch.nearestNeighbor) {
+            bin = solved.keyOf(this.locations);
+            TSPState cached = solved.get(bin);
+            if (cached != null) {
+                return cached;
+            }
+            // Solve from the sorted customers, so the cached tour does not depend on
+            // which ordering of this route happened to be solved first
+            this.locations = bin.getCustomers();
         }
 
         switch (Settings.tspSearch) {
             case localSearch: {
-                Timer.tspTimer.start();
+                long start = Metrics.start();
+                // Seeded by the route, so a route gets the same tour whichever thread solves it
+                this.setRandom(Rng.forRoute(this.locations));
                 TSPState solution = null;
                 switch (Settings.tspLimitBy) {
                     case dist:
@@ -35,81 +44,208 @@ public class TSPLocalSearch extends AbstractLocalSearch<Double, TSPState> {
                         solution = this.search(Settings.tspSearchDist, Settings.tspSearchTime);
                         break;
                     default:
-                        System.err.println("Unhandled tspLimitBy: " + Settings.tspLimitBy);
-                        System.exit(1);
+                        Log.fatal("Unhandled tspLimitBy: {}", Settings.tspLimitBy);
+                }
+                Metrics.record(Metrics.Latency.tsp, start);
+                Metrics.count(Metrics.Counter.tspSolves);
+                if (bin != null) {
+                    solved.put(bin, solution);
                 }
-                Timer.tspTimer.stop();
-                solved.put(bin, solution);
                 return solution;
             }
             case cp: {
                 try {
+                    long start = Metrics.start();
                     CPInstance cpInstance = CPInstance.getInstance(problem);
                     TSPState solution = new TSPState(problem, cpInstance.solveTSP(locations));
-                    solved.put(bin, solution);
+                    Metrics.record(Metrics.Latency.tsp, start);
+                    Metrics.count(Metrics.Counter.tspSolves);
+                    if (bin != null) {
+                        solved.put(bin, solution);
+                    }
                     return solution;
                 } catch (IloException e) {
-                    e.printStackTrace();
-                    System.exit(1);
+                    Log.fatal("CP TSP solve failed: {}", e);
                     return null;
                 }
             }
-            case nearestNeighbor:
-                return this.getInitial();
+            case twoOptOrOpt: {
+                long start = Metrics.start();
+                TSPState solution = this.improve(this.getInitial());
+                Metrics.record(Metrics.Latency.tsp, start);
+                Metrics.count(Metrics.Counter.tspSolves);
+                if (bin != null) {
+                    solved.put(bin, solution);
+                }
+                return solution;
+            }
+            case nearestNeighbor: {
+                long start = Metrics.start();
+                TSPState solution = this.getInitial();
+                Metrics.record(Metrics.Latency.tsp, start);
+                Metrics.count(Metrics.Counter.tspSolves);
+                return solution;
+            }
             default:
-                System.err.println("Unhandled tspSearch: " + Settings.tspSearch);
-                System.exit(1);
+                Log.fatal("Unhandled tspSearch: {}", Settings.tspSearch);
                 return null;
         }
     }
 
+    /**
+     * Runs 2-opt and Or-opt moves on start until neither improves it, or until
+     * tspSearchTime runs out unless limited by dist only.
+     *
+     * The tour is kept as a single array closed by the depot at both ends, so
+     * every move is applied in place and its gain comes from the edges it changes.
+     */
+    private TSPState improve(TSPState start) {
+        int[] order = start.getOrder();
+        int[] tour = new int[order.length + 2];
+        System.arraycopy(order, 0, tour, 1, order.length);
+
+        boolean timeLimited = Settings.tspLimitBy != Settings.SearchLimit.dist;
+        Timer timer = new Timer();
+        timer.start();
+        boolean improved = true;
+        while (improved && !(timeLimited && timer.getCurrentTime() > Settings.tspSearchTime)) {
+            improved = twoOpt(tour) | orOpt(tour);
+        }
+
+        double cost = 0;
+        for (int i = 0; i + 1 < tour.length; i ++) {
+            cost += problem.dist(tour[i], tour[i + 1]);
+        }
+        TSPState result = new TSPState(problem, Arrays.copyOfRange(tour, 1, tour.length - 1));
+        result.rememberValue(cost);
+        return result;
+    }
+
+    private static final double EPSILON = 1e-9;
+
+    /**
+     * First-improvement pass replacing edges (a, b) and (c, d) by (a, c) and (b, d),
+     * which reverses the segment from b to c.
+     */
+    private boolean twoOpt(int[] tour) {
+        boolean improved = false;
+        for (int i = 0; i < tour.length - 3; i ++) {
+            for (int j = i + 2; j < tour.length - 1; j ++) {
+                int a = tour[i], b = tour[i + 1], c = tour[j], d = tour[j + 1];
+                double gain = problem.dist(a, b) + problem.dist(c, d) - problem.dist(a, c) - problem.dist(b, d);
+                if (gain > EPSILON) {
+                    reverse(tour, i + 1, j);
+                    improved = true;
+                }
+            }
+        }
+        return improved;
+    }
+
+    /**
+     * First-improvement pass moving segments of one to three customers between two
+     * other consecutive stops, in either direction.
+     */
+    private boolean orOpt(int[] tour) {
+        boolean improved = false;
+        for (int length = 1; length <= 3; length ++) {
+            for (int i = 1; i + length < tour.length; i ++) {
+                int last = i + length - 1;
+                int prev = tour[i - 1], first = tour[i], end = tour[last], next = tour[last + 1];
+                double removeGain = problem.dist(prev, first) + problem.dist(end, next) - problem.dist(prev, next);
+
+                for (int j = 0; j + 1 < tour.length; j ++) {
+                    if (j >= i - 1 && j <= last) {
+                        continue;
+                    }
+                    int a = tour[j], b = tour[j + 1];
+                    double edge = problem.dist(a, b);
+                    double forwards = problem.dist(a, first) + problem.dist(end, b) - edge;
+                    double backwards = problem.dist(a, end) + problem.dist(first, b) - edge;
+                    if (removeGain - Math.min(forwards, backwards) > EPSILON) {
+                        moveSegment(tour, i, last, j, backwards < forwards);
+                        improved = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return improved;
+    }
+
+    /**
+     * Moves tour[first..last] to between tour[j] and tour[j + 1], optionally reversed.
+     */
+    private static void moveSegment(int[] tour, int first, int last, int j, boolean reversed) {
+        if (reversed) {
+            reverse(tour, first, last);
+        }
+        // Rotating a range by reversing both parts and then the whole range
+        if (j < first) {
+            reverse(tour, j + 1, first - 1);
+            reverse(tour, first, last);
+            reverse(tour, j + 1, last);
+        } else {
+            reverse(tour, first, last);
+            reverse(tour, last + 1, j);
+            reverse(tour, first, j);
+        }
+    }
+
+    private static void reverse(int[] tour, int from, int to) {
+        while (from < to) {
+            int temp = tour[from];
+            tour[from++] = tour[to];
+            tour[to--] = temp;
+        }
+    }
+
     @Override
     TSPState getInitial() {
-        Set<Integer> toVisit = new HashSet<>(locations);
-        double currX = problem.xCoordOfCustomer[0];
-        double currY = problem.yCoordOfCustomer[0];
-        double currXBackwards = problem.xCoordOfCustomer[0];
-        double currYBackwards = problem.yCoordOfCustomer[0];
-        List<Integer> path = new ArrayList<>();
-        List<Integer> pathBackwards = new ArrayList<>();
-        while (!toVisit.isEmpty()) {
-            Optional<Integer> best = Optional.empty();
-            Optional<Double> bestDist = Optional.empty();
-            for (Integer next : toVisit) {
-                double dist = Utils.dist(currX, currY, problem.xCoordOfCustomer[next], problem.yCoordOfCustomer[next]);
-                if (!bestDist.isPresent() || dist <bestDist.get()) {
-                    best = Optional.of(next);
-                    bestDist = Optional.of(dist);
+        // Customers left to visit are kept in toVisit[0, remaining)
+        int[] toVisit = locations.clone();
+        int remaining = toVisit.length;
+        int curr = 0;
+        int currBackwards = 0;
+        int[] path = new int[toVisit.length];
+        int pathSize = 0;
+        int[] pathBackwards = new int[toVisit.length];
+        int pathBackwardsSize = 0;
+        while (remaining > 0) {
+            int best = -1;
+            double bestDist = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < remaining; i ++) {
+                double dist = problem.dist(curr, toVisit[i]);
+                if (best < 0 || dist < bestDist) {
+                    best = i;
+                    bestDist = dist;
                 }
             }
 
-            path.add(best.get());
-            toVisit.remove(best.get());
-            currX = problem.xCoordOfCustomer[best.get()];
-            currY = problem.yCoordOfCustomer[best.get()];
+            curr = toVisit[best];
+            path[pathSize++] = curr;
+            toVisit[best] = toVisit[--remaining];
 
             // 2nd tail end
-            if (!toVisit.isEmpty()) {
-                Optional<Integer> best2 = Optional.empty();
-                Optional<Double> bestDist2 = Optional.empty();
-                for (Integer next2 : toVisit) {
-                    double dist2 = Utils.dist(currXBackwards, currYBackwards,
-                            problem.xCoordOfCustomer[next2], problem.yCoordOfCustomer[next2]);
-                    if (!bestDist2.isPresent() || dist2 <bestDist.get()) {
-                        best2 = Optional.of(next2);
-                        bestDist2 = Optional.of(dist2);
+            if (remaining > 0) {
+                int best2 = -1;
+                double bestDist2 = Double.POSITIVE_INFINITY;
+                for (int i = 0; i < remaining; i ++) {
+                    double dist2 = problem.dist(currBackwards, toVisit[i]);
+                    if (best2 < 0 || dist2 < bestDist2) {
+                        best2 = i;
+                        bestDist2 = dist2;
                     }
                 }
 
-                pathBackwards.add(best2.get());
-                toVisit.remove(best2.get());
-                currXBackwards = problem.xCoordOfCustomer[best2.get()];
-                currYBackwards = problem.yCoordOfCustomer[best2.get()];
+                currBackwards = toVisit[best2];
+                pathBackwards[pathBackwardsSize++] = currBackwards;
+                toVisit[best2] = toVisit[--remaining];
             }
         }
         // Rejoin paths
-        for (int i = pathBackwards.size() - 1; i >= 0; i--) {
-            path.add(pathBackwards.get(i));
+        for (int i = pathBackwardsSize - 1; i >= 0; i--) {
+            path[pathSize++] = pathBackwards[i];
         }
 
         return new TSPState(problem, path);
@@ -1,76 +1,200 @@
 package solver.ls;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Optional;
+import java.util.SplittableRandom;
 
 public class TSPState extends AbstractLocalSearchState<Double> {
     private VRPInstance problem;
-    public List<Integer> order;
+    private int[] order;
 
-    public TSPState(VRPInstance problem, List<Integer> order) {
+    public TSPState(VRPInstance problem, int[] order) {
         this.problem = problem;
         this.order = order;
     }
 
-    public List<Integer> getOrder() {
-        return new ArrayList<>(this.order);
+    /**
+     * The visiting order. The array is shared and must not be modified, except
+     * through moves of a copy.
+     */
+    public int[] getOrder() {
+        return this.order;
     }
 
     @Override
     public Double getValue(Optional<Double> prevBeset) {
-        Timer.tspGetValue.start();
         double dist = 0;
-        double currX = 0, currY = 0;
-        for (Integer loc : order) {
-            double newX = problem.xCoordOfCustomer[loc];
-            double newY = problem.yCoordOfCustomer[loc];
-            dist += Utils.dist(currX, currY, newX, newY);
-            currX = newX;
-            currY = newY;
+        int curr = 0;
+        for (int loc : order) {
+            dist += problem.dist(curr, loc);
+            curr = loc;
         }
-        dist += Utils.dist(currX, currY, 0, 0);
-        Timer.tspGetValue.stop();
+        dist += problem.dist(curr, 0);
         return dist;
     }
 
     @Override
-    public Generator<AbstractLocalSearchState<Double>> getNeighbors() {
-        return new Generator<AbstractLocalSearchState<Double>>() {
+    TSPState copy() {
+        TSPState copy = new TSPState(problem, order.clone());
+        copy.setKnownValue(getKnownValue());
+        return copy;
+    }
+
+    @Override
+    Neighborhood<Move<Double>> getMoves(boolean improvingOnly, boolean validOnly) {
+        return getSwaps(improvingOnly, 0, order.length);
+    }
+
+    /**
+     * One part per first position of a swap.
+     */
+    @Override
+    int numMovePartitions() {
+        return order.length;
+    }
+
+    @Override
+    Neighborhood<Move<Double>> getMovePartition(int part, boolean improvingOnly, boolean validOnly) {
+        return getSwaps(improvingOnly, part, part + 1);
+    }
+
+    /**
+     * Swaps of positions i < j for first positions i in [iStart, iEnd).
+     */
+    private Neighborhood<Move<Double>> getSwaps(boolean improvingOnly, int iStart, int iEnd) {
+        return new Neighborhood<Move<Double>>() {
+            private int i = iStart;
+            private int j = iStart + 1;
+
             @Override
-            protected void run() throws InterruptedException {
-                for (int i = 0; i < order.size(); i ++) {
-                    for (int j = i + 1; j < order.size(); j ++) {
-                        Timer.tspGetNeighbors.start();
-                        List<Integer> newOrder = new ArrayList<>(order);
-                        int temp = newOrder.get(i);
-                        newOrder.set(i, newOrder.get(j));
-                        newOrder.set(j, temp);
-                        Timer.tspGetNeighbors.stop();
-                        this.yield(new TSPState(problem, newOrder));
+            protected Move<Double> advance() {
+                while (i < iEnd) {
+                    if (j >= order.length) {
+                        i ++;
+                        j = i + 1;
+                        continue;
+                    }
+
+                    if (problem.isGranular() && !isGranularSwap(i, j)) {
+                        j ++;
+                        continue;
+                    }
+
+                    double delta = Moves.swapDelta(problem, order, i, j);
+                    if (improvingOnly && delta >= 0) {
+                        j ++;
+                        continue;
                     }
+
+                    Metrics.count(Metrics.Counter.neighborsGenerated);
+                    return new Swap(i, j ++, delta);
                 }
+                return null;
             }
         };
     }
 
+    /**
+     * Exchange of the customers at positions i and j. Evaluating a swap only adds
+     * its delta; the states it is built or applied into get their value from their
+     * tour, so rounding errors of deltas do not pile up along the search.
+     *
+     * Building and applying thus take time linear in the tour, not constant time.
+     * A state is only built or applied into once per accepted swap or chain step,
+     * against the quadratically many swaps evaluated from it in constant time.
+     */
+    private class Swap extends Move<Double> {
+        private final int i;
+        private final int j;
+        private final double delta;
+        private Optional<Double> valueBefore;
+
+        Swap(int i, int j, double delta) {
+            this.i = i;
+            this.j = j;
+            this.delta = delta;
+        }
+
+        @Override
+        Double getValue(Optional<Double> best) {
+            return TSPState.this.getValueRemember() + delta;
+        }
+
+        @Override
+        TSPState build() {
+            int[] newOrder = order.clone();
+            newOrder[i] = order[j];
+            newOrder[j] = order[i];
+
+            // Walked once per accepted swap, so values never drift from their tours
+            TSPState neighbor = new TSPState(problem, newOrder);
+            neighbor.rememberValue(neighbor.getValue(Optional.empty()));
+            return neighbor;
+        }
+
+        @Override
+        void apply() {
+            swap();
+            valueBefore = getKnownValue();
+            // Re-anchored on the tour, so a chain that comes back to a tour has its value
+            setKnownValue(Optional.of(TSPState.this.getValue(Optional.empty())));
+        }
+
+        @Override
+        void undo() {
+            swap();
+            setKnownValue(valueBefore);
+        }
+
+        private void swap() {
+            int temp = order[i];
+            order[i] = order[j];
+            order[j] = temp;
+        }
+    }
+
+    /**
+     * Granular swaps must put at least one of the two customers next to one of its
+     * candidates; the depot counts as a candidate of everyone.
+     */
+    private boolean isGranularSwap(int i, int j) {
+        return isGranularAt(order[j], i, j) || isGranularAt(order[i], j, i);
+    }
+
+    private boolean isGranularAt(int loc, int pos, int vacated) {
+        for (int neighborPos = pos - 1; neighborPos <= pos + 1; neighborPos += 2) {
+            // After the swap the vacated slot holds the other customer, not loc. It can only
+            // be next to pos in an adjacent swap, where loc and the other customer already
+            // were neighbors, so that edge is not new; skipping it is only right there
+            if (neighborPos == vacated) {
+                continue;
+            }
+            if (neighborPos < 0 || neighborPos >= order.length) {
+                return true;
+            }
+            if (problem.isCandidate(loc, order[neighborPos])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     boolean isValid() {
         return true;
     }
 
     @Override
-    AbstractLocalSearchState<Double> getRandom(double dist) {
-        int trueDist = (int) Math.ceil(dist * order.size());
+    AbstractLocalSearchState<Double> getRandom(double dist, SplittableRandom rand) {
+        int trueDist = (int) Math.ceil(dist * order.length);
 
-        List<Integer> newOrder = new ArrayList<>(order);
+        int[] newOrder = order.clone();
 
         for (int i = 0; i < trueDist; i ++) {
-            int ind0 = Settings.rand.nextInt(newOrder.size());
-            int ind1 = Settings.rand.nextInt(newOrder.size());
-            Integer temp = newOrder.get(ind0);
-            newOrder.set(ind0, newOrder.get(ind1));
-            newOrder.set(ind1, temp);
+            int ind0 = rand.nextInt(newOrder.length);
+            int ind1 = rand.nextInt(newOrder.length);
+            int temp = newOrder[ind0];
+            newOrder[ind0] = newOrder[ind1];
+            newOrder[ind1] = temp;
         }
 
         return new TSPState(problem, newOrder);
@@ -78,16 +202,15 @@ public class TSPState extends AbstractLocalSearchState<Double> {
 
     @Override
     void print() {
-        if (Settings.verbosity >= 5) {
-            System.out.print("TSPState:");
-            for (Integer loc : order) {
-                System.out.print(" " + loc);
+        if (Log.enabled(5)) {
+            StringBuilder text = new StringBuilder("TSPState:");
+            for (int loc : order) {
+                text.append(" " + loc);
             }
-            System.out.println();
+            Log.log(5, text.toString());
         }
     }
 
     @Override
     String getProblem() { return "TSP"; }
 }
-
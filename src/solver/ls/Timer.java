@@ -3,11 +3,9 @@ package solver.ls;
 public class Timer {
 
     public static Timer totalTimer = new Timer();
-    public static Timer cpTimer = new Timer();
-    public static Timer lsTimer = new Timer();
-    public static Timer tspTimer = new Timer();
-    public static Timer tspGetValue = new Timer();
-    public static Timer tspGetNeighbors = new Timer();
+    // Entered from every search thread, and from every instance of a batch
+    public static Timer cpTimer = new SharedTimer();
+    public static Timer lsTimer = new SharedTimer();
 
     private long startTime;
     private long stopTime;
@@ -66,14 +64,38 @@ public class Timer {
         System.out.println("Total time: " + totalTimer);
         System.out.println("  CP feasible: " + cpTimer);
         System.out.println("  LS search: " + lsTimer);
-        System.out.println("    TSP solve: " + tspTimer);
-        System.out.println("      TSP getValue: " + tspGetValue);
-        System.out.println("      TSP getNeighbors: " + tspGetNeighbors);
-
     }
 
     @Override
     public String toString() {
         return String.format("%.2f", this.getTotalTime());
     }
+
+    /**
+     * Timer that several threads may be inside at once. It measures the wall time
+     * during which at least one thread is between start and stop.
+     */
+    private static class SharedTimer extends Timer {
+        private int active = 0;
+
+        @Override
+        public synchronized void start() {
+            if (active++ == 0) {
+                super.start();
+            }
+        }
+
+        @Override
+        public synchronized void stop() {
+            assert active > 0 : "Called stop on running timer.";
+            if (--active == 0) {
+                super.stop();
+            }
+        }
+
+        @Override
+        public synchronized double getTotalTime() {
+            return super.getTotalTime();
+        }
+    }
 }
@@ -2,12 +2,11 @@ package solver.ls;
 
 import ilog.concert.IloException;
 
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 
 import java.util.Arrays;
 import java.util.Optional;
-import java.util.Scanner;
+import java.util.function.Consumer;
 
 public class VRPInstance {
     // VRP Input Parameters
@@ -18,69 +17,96 @@ public class VRPInstance {
     double[] xCoordOfCustomer;    // the x coordinate of each customer
     double[] yCoordOfCustomer;    // the y coordinate of each customer
 
-    int[] quadrantOfCustomer; // Which Cartesian quadrant each customer is in
-
     int maxCustomersPerVehicle;
 
+    DistanceTable distances; // distances between customers, with the depot as customer 0
+
+    int[][] candidatesOfCustomer; // the granularK nearest other customers of each customer, closest first
+
+    TSPCache tspCache; // solved routes of this instance, null when caching is disabled
+
+    private Optional<Consumer<Solution>> onNewBest = Optional.empty(); // told of every new incumbent
+
     public VRPInstance(String fileName) {
-        Scanner read = null;
+        InstanceFile read = null;
         try {
-            read = new Scanner(new File(fileName));
-        } catch (FileNotFoundException e) {
+            read = InstanceFile.load(fileName);
+        } catch (IOException e) {
             System.out.println("Error: in VRPInstance() " + fileName + "\n" + e.getMessage());
             System.exit(-1);
         }
 
-        numCustomers = read.nextInt();
-        numVehicles = read.nextInt();
-        vehicleCapacity = read.nextInt();
+        numCustomers = read.numCustomers;
+        numVehicles = read.numVehicles;
+        vehicleCapacity = read.vehicleCapacity;
 
         System.out.println("Number of customers: " + numCustomers);
         System.out.println("Number of vehicles: " + numVehicles);
         System.out.println("Vehicle capacity: " + vehicleCapacity);
 
-        demandOfCustomer = new int[numCustomers];
-        xCoordOfCustomer = new double[numCustomers];
-        yCoordOfCustomer = new double[numCustomers];
+        demandOfCustomer = read.demandOfCustomer;
+        xCoordOfCustomer = read.xCoordOfCustomer;
+        yCoordOfCustomer = read.yCoordOfCustomer;
+        maxCustomersPerVehicle = read.maxCustomersPerVehicle;
+
+        distances = DistanceTable.build(xCoordOfCustomer, yCoordOfCustomer,
+                (long) Settings.distTableMaxMB * 1024 * 1024);
+        Log.log(1, "Distance table: {}", distances.getKind());
 
-        for (int i = 0; i < numCustomers; i++) {
-            demandOfCustomer[i] = read.nextInt();
-            xCoordOfCustomer[i] = read.nextDouble();
-            yCoordOfCustomer[i] = read.nextDouble();
+        if (Settings.granularK > 0) {
+            this.setUpCandidates(Settings.granularK);
         }
 
-        // Find maximum number of customers a vehicle can deliver
-        int[] sortedDemands = Arrays.copyOf(demandOfCustomer, demandOfCustomer.length);
-        Arrays.sort(sortedDemands);
-        maxCustomersPerVehicle = 0;
-        int totalDemand = 0;
-        for (int c = 0; c < numCustomers; c ++) {
-            totalDemand += sortedDemands[c];
-            if (totalDemand > vehicleCapacity) {
-                break;
-            }
-            maxCustomersPerVehicle++;
+        if (Settings.tspCacheSize > 0) {
+            tspCache = new TSPCache(numCustomers, Settings.tspCacheSize);
         }
+    }
 
-        quadrantOfCustomer = new int[numCustomers];
-        this.setUpQuadrants();
+    double dist(int loc0, int loc1) {
+        return distances.get(loc0, loc1);
+    }
+
+    /**
+     * Distance from the coordinates, for reported costs: the table may hold floats.
+     */
+    double exactDist(int loc0, int loc1) {
+        return distances.compute(loc0, loc1);
+    }
+
+    public void setOnNewBest(Consumer<Solution> onNewBest) {
+        this.onNewBest = Optional.of(onNewBest);
+    }
+
+    /**
+     * Hands a new incumbent to onNewBest. Called from every search thread.
+     */
+    void publishBest(Solution solution) {
+        onNewBest.ifPresent(consumer -> consumer.accept(solution));
     }
 
     public Optional<Solution> solve() throws IloException {
-        CPInstance cpInstance = CPInstance.getInstance(this);
         Timer.cpTimer.start();
-        Optional<Solution> feasible = cpInstance.getFeasible();
+        Optional<Solution> feasible = Optional.empty();
+        if (Settings.feasibleSearch == Settings.FeasibleSearch.packing) {
+            feasible = new BinPacker(this).getFeasible(Settings.packingNodeLimit);
+        }
+        // CP is only started when packing is disabled or could not find a packing
+        if (!feasible.isPresent()) {
+            CPInstance cpInstance = CPInstance.getInstance(this);
+            feasible = cpInstance.getFeasible();
+        }
         Timer.cpTimer.stop();
         if (!feasible.isPresent()) {
             return feasible;
         }
+        publishBest(feasible.get());
 
         if (Settings.feasibilityOnly) {
             return feasible;
         }
         else {
-            if (Settings.verbosity >= 1) {
-                System.out.println("Initial feasibility cost: " + feasible.get().getCost());
+            if (Log.enabled(1)) {
+                Log.log(1, "Initial feasibility cost: {}", feasible.get().getCost());
             }
 
             LSInstance lsInstance = new LSInstance(this);
@@ -91,24 +117,62 @@ public class VRPInstance {
         }
     }
 
-    private void setUpQuadrants() {
-        for (int c = 0; c < numCustomers; c ++) {
-            double custX = xCoordOfCustomer[c] - xCoordOfCustomer[0];
-            double custY = yCoordOfCustomer[c] - yCoordOfCustomer[0];
+    boolean isGranular() {
+        return candidatesOfCustomer != null;
+    }
 
-            if ((custX >= 0) && (custY >= 0)) {
-                quadrantOfCustomer[c] = 1;
-            }
-            else if ((custX <= 0) && (custY >= 0)) {
-                quadrantOfCustomer[c] = 2;
-            }
-            else if ((custX <= 0) && (custY <= 0)) {
-                quadrantOfCustomer[c] = 3;
+    boolean isCandidate(int loc, int candidate) {
+        for (int c : candidatesOfCustomer[loc]) {
+            if (c == candidate) {
+                return true;
             }
-            else {
-                quadrantOfCustomer[c] = 4;
+        }
+        return false;
+    }
+
+    private void setUpCandidates(int k) {
+        candidatesOfCustomer = findNearest(Math.min(k, numCustomers - 2));
+    }
+
+    /**
+     * The k nearest other customers of every customer, closest first, reusing the
+     * granular candidates when they are long enough.
+     */
+    int[][] getNearest(int k) {
+        int numNearest = Math.min(k, numCustomers - 2);
+        if (candidatesOfCustomer == null || numCustomers < 2 || candidatesOfCustomer[1].length < numNearest) {
+            return findNearest(numNearest);
+        }
+
+        int[][] nearest = new int[numCustomers][];
+        nearest[0] = new int[0];
+        for (int c = 1; c < numCustomers; c ++) {
+            nearest[c] = Arrays.copyOf(candidatesOfCustomer[c], numNearest);
+        }
+        return nearest;
+    }
+
+    private int[][] findNearest(int numNearest) {
+        int[][] nearest = new int[numCustomers][];
+        nearest[0] = new int[0];
+
+        // Sort by distance packed above the customer index; distances are non-negative,
+        // so their float bits order the same way as the distances themselves
+        long[] keys = new long[numCustomers - 2];
+        for (int c = 1; c < numCustomers; c ++) {
+            int k0 = 0;
+            for (int other = 1; other < numCustomers; other ++) {
+                if (other != c) {
+                    keys[k0++] = ((long) Float.floatToIntBits((float) dist(c, other)) << 32) | other;
+                }
             }
+            Arrays.sort(keys);
 
+            nearest[c] = new int[numNearest];
+            for (int i = 0; i < numNearest; i ++) {
+                nearest[c][i] = (int) keys[i];
+            }
         }
+        return nearest;
     }
 }
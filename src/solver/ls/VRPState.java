@@ -3,29 +3,79 @@ package solver.ls;
 import ilog.concert.IloException;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.DoubleAdder;
 
 public class VRPState extends AbstractLocalSearchState<Double> {
 
     private VRPInstance problem;
-    private List<List<Integer>> paths;
+    private Routes paths;
 
-    public VRPState(VRPInstance problem, List<List<Integer>> paths) {
+    // Cost of each route once solved, NaN while unknown
+    private double[] routeCosts;
+
+    // Total demand on each route; capacity minus a load is the room left on the route
+    private int[] loads;
+
+    // Cheapest insertion of each customer into each route, shared by a state with every
+    // state derived from it; an entry holds while its route array is in place
+    private final Insertion[][] insertions;
+
+    private static class Insertion {
+        final int[] route;
+        final int pos;
+        final double delta;
+
+        Insertion(int[] route, int pos, double delta) {
+            this.route = route;
+            this.pos = pos;
+            this.delta = delta;
+        }
+    }
+
+    public VRPState(VRPInstance problem, Routes paths) {
         this.problem = problem;
         this.paths = paths;
+        this.routeCosts = new double[paths.size()];
+        Arrays.fill(this.routeCosts, Double.NaN);
+        this.insertions = new Insertion[problem.numCustomers][paths.size()];
+        this.loads = new int[paths.size()];
+        for (int bin = 0; bin < paths.size(); bin ++) {
+            this.loads[bin] = loadOf(paths.get(bin));
+        }
     }
 
-    public List<List<Integer>> getPaths() {
-        return Utils.doubleClone(this.paths);
+    /**
+     * Neighbor of parent that inherits its route costs except for the changed routes.
+     * The loads are those of the new paths.
+     */
+    private VRPState(VRPState parent, Routes paths, int[] loads, int... changedBins) {
+        this.problem = parent.problem;
+        this.paths = paths;
+        this.loads = loads;
+        this.routeCosts = parent.routeCosts.clone();
+        this.insertions = parent.insertions;
+        for (int bin : changedBins) {
+            this.routeCosts[bin] = Double.NaN;
+        }
     }
 
-    private boolean isFeasible() {
-        for (List<Integer> path : paths) {
-            int totalDemand = 0;
-            for (Integer loc : path) {
-                totalDemand += problem.demandOfCustomer[loc];
-            }
+    public Routes getPaths() {
+        return this.paths.copy();
+    }
 
-            if (totalDemand > problem.vehicleCapacity) {
+    private int loadOf(int[] route) {
+        int load = 0;
+        for (int loc : route) {
+            load += problem.demandOfCustomer[loc];
+        }
+        return load;
+    }
+
+    private boolean isFeasible() {
+        for (int load : loads) {
+            if (load > problem.vehicleCapacity) {
                 return false;
             }
         }
@@ -35,73 +85,435 @@ public class VRPState extends AbstractLocalSearchState<Double> {
 
     @Override
     Double getValue(Optional<Double> prevBest) {
-        double totalCost = 0;
-        System.out.println("getValue VRP");
-        for (int i = 0; i < paths.size(); i++) {
-            if (prevBest.isPresent() && totalCost > prevBest.get()) {
+        Log.log(4, "getValue VRP");
+        int[] bins = unsolvedBins(-1, -1);
+        int[][] routes = new int[bins.length][];
+        for (int k = 0; k < bins.length; k++) {
+            routes[k] = paths.get(bins[k]);
+        }
+
+        TSPState[] solved = solveRoutes(bins, routes, knownCost(-1, -1), prevBest);
+        for (int k = 0; k < bins.length; k++) {
+            if (solved[k] != null) {
+                setSolved(bins[k], solved[k]);
+            }
+        }
+        return knownCost(-1, -1);
+    }
+
+    /**
+     * Sum of the known route costs other than those of the excluded routes, always
+     * added in bin order: a running total would drift, and states with the same
+     * routes would then differ in value by rounding.
+     */
+    private double knownCost(int excluded0, int excluded1) {
+        double known = 0;
+        for (int bin = 0; bin < paths.size(); bin ++) {
+            if (bin != excluded0 && bin != excluded1 && !Double.isNaN(routeCosts[bin])) {
+                known += routeCosts[bin];
+            }
+        }
+        return known;
+    }
+
+    /**
+     * Routes without a known cost, plus the changed ones, in bin order.
+     */
+    private int[] unsolvedBins(int changed0, int changed1) {
+        int count = 0;
+        for (int bin = 0; bin < paths.size(); bin ++) {
+            if (bin == changed0 || bin == changed1 || Double.isNaN(routeCosts[bin])) {
+                count ++;
+            }
+        }
+        int[] bins = new int[count];
+        count = 0;
+        for (int bin = 0; bin < paths.size(); bin ++) {
+            if (bin == changed0 || bin == changed1 || Double.isNaN(routeCosts[bin])) {
+                bins[count ++] = bin;
+            }
+        }
+        return bins;
+    }
+
+    private void setSolved(int bin, TSPState solved) {
+        paths.set(bin, solved.getOrder());
+        routeCosts[bin] = solved.getValueRemember();
+    }
+
+    /**
+     * Solves routes[k], the route of bins[k], in order, skipping the rest once known
+     * plus the costs solved so far exceeds prevBest. Skipped routes are left null.
+     */
+    private TSPState[] solveRoutes(int[] bins, int[][] routes, double known, Optional<Double> prevBest) {
+        if (Settings.tspThreads > 1 && bins.length > 1) {
+            return solveInParallel(bins, routes, known, prevBest);
+        }
+
+        TSPState[] solved = new TSPState[bins.length];
+        for (int k = 0; k < bins.length; k++) {
+            if (prevBest.isPresent() && known > prevBest.get()) {
                 break;
             }
-            System.out.println("  solve " + (i + 1) + " / " + paths.size());
-            TSPLocalSearch tspLS = new TSPLocalSearch(problem, paths.get(i));
-            TSPState best = tspLS.solve();
-            paths.set(i, best.getOrder());
-            totalCost += best.getValueRemember();
+            if (Log.enabled(4)) {
+                Log.log(4, "  solve {} / {}", bins[k] + 1, paths.size());
+            }
+            solved[k] = new TSPLocalSearch(problem, routes[k]).solve();
+            known += solved[k].getValueRemember();
+        }
+        return solved;
+    }
+
+    private static ForkJoinPool tspPool = null;
+
+    private static synchronized ForkJoinPool getTSPPool() {
+        if (tspPool == null) {
+            tspPool = new ForkJoinPool(Settings.tspThreads);
+        }
+        return tspPool;
+    }
+
+    /**
+     * Solves the given routes as separate tasks of a work-stealing pool. Tasks share
+     * a running total and skip their route once it exceeds prevBest, the same early
+     * exit the sequential loop takes.
+     */
+    private TSPState[] solveInParallel(int[] bins, int[][] routes, double known, Optional<Double> prevBest) {
+        DoubleAdder runningCost = new DoubleAdder();
+        runningCost.add(known);
+        TSPState[] solved = new TSPState[bins.length];
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int k = 0; k < bins.length; k++) {
+            int task = k;
+            tasks.add(getTSPPool().submit(() -> {
+                if (prevBest.isPresent() && runningCost.sum() > prevBest.get()) {
+                    return;
+                }
+                if (Log.enabled(4)) {
+                    Log.log(4, "  solve {} / {}", bins[task] + 1, paths.size());
+                }
+                TSPState best = new TSPLocalSearch(problem, routes[task]).solve();
+                runningCost.add(best.getValueRemember());
+                solved[task] = best;
+            }));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
         }
+        return solved;
+    }
+
+    @Override
+    VRPState copy() {
+        VRPState copy = new VRPState(this, paths.copy(), loads.clone());
+        copy.setKnownValue(getKnownValue());
+        return copy;
+    }
 
-        return totalCost;
+    @Override
+    Neighborhood<Move<Double>> getMoves(boolean improvingOnly, boolean validOnly) {
+        return new Relocates(improvingOnly, validOnly, 0, 1, -1);
+    }
+
+    /**
+     * One part per pair of routes.
+     */
+    @Override
+    int numMovePartitions() {
+        return paths.size() * (paths.size() - 1) / 2;
     }
 
     @Override
-    Generator<AbstractLocalSearchState<Double>> getNeighbors() {
-        return new Generator<AbstractLocalSearchState<Double>>() {
-            @Override
-            protected void run() throws InterruptedException {
-                for (int binInd0 = 0; binInd0 < paths.size(); binInd0 ++) {
-                    for (int binInd1 = binInd0 + 1; binInd1 < paths.size(); binInd1 ++) {
-                        for (int i = 0; i < paths.get(binInd0).size(); i ++) {
-                            List<List<Integer>> moveForwards = new ArrayList<>(paths);
-                            List<Integer> bin0 = new ArrayList<>(moveForwards.get(binInd0));
-                            List<Integer> bin1 = new ArrayList<>(moveForwards.get(binInd1));
-                            moveForwards.set(binInd0, bin0);
-                            moveForwards.set(binInd1, bin1);
-
-                            bin1.add(bin0.remove(i));
-
-                            this.yield(new VRPState(problem, moveForwards));
-                        }
-
-                        for (int j = 0; j < paths.get(binInd1).size(); j ++) {
-                            List<List<Integer>> moveBackwards = new ArrayList<>(paths);
-                            List<Integer> bin0 = new ArrayList<>(moveBackwards.get(binInd0));
-                            List<Integer> bin1 = new ArrayList<>(moveBackwards.get(binInd1));
-                            moveBackwards.set(binInd0, bin0);
-                            moveBackwards.set(binInd1, bin1);
-
-                            bin0.add(bin1.remove(j));
-
-                            this.yield(new VRPState(problem, moveBackwards));
-                        }
-
-//                        for (int i = 0; i < paths.get(binInd0).size(); i ++) {
-//                            for (int j = 0; j < paths.get(binInd1).size(); j ++) {
-//                                List<List<Integer>> moveBoth = new ArrayList<>(paths);
-//                                List<Integer> bin0 = new ArrayList<>(moveBoth.get(binInd0));
-//                                List<Integer> bin1 = new ArrayList<>(moveBoth.get(binInd1));
-//                                moveBoth.set(binInd0, bin0);
-//                                moveBoth.set(binInd1, bin1);
-//
-//                                int value0 = bin0.remove(i);
-//                                int value1 = bin1.remove(j);
-//                                bin0.add(value1);
-//                                bin1.add(value0);
-//
-//                                this.yield(new VRPState(problem, moveBoth));
-//                            }
-//                        }
+    Neighborhood<Move<Double>> getMovePartition(int part, boolean improvingOnly, boolean validOnly) {
+        // Pairs in the order getMoves visits them, binInd0 having size - 1 - binInd0 of them
+        int binInd0 = 0;
+        while (part >= paths.size() - 1 - binInd0) {
+            part -= paths.size() - 1 - binInd0;
+            binInd0 ++;
+        }
+        return new Relocates(improvingOnly, validOnly, binInd0, binInd0 + 1 + part, 1);
+    }
+
+    /**
+     * Relocates of single customers between pairs of routes, starting from the pair
+     * (binInd0, binInd1) and covering numPairs pairs, or all remaining ones if negative.
+     */
+    private class Relocates extends Neighborhood<Move<Double>> {
+        private final boolean improvingOnly;
+        private final boolean validOnly;
+        // Routes over capacity before any of the relocates, which cannot change while
+        // the cursor is in use
+        private final int overfull;
+        private int binInd0;
+        private int binInd1;
+        private int pairsLeft;
+        private boolean backwards = false;
+        private int pos = 0;
+
+        Relocates(boolean improvingOnly, boolean validOnly, int binInd0, int binInd1, int numPairs) {
+            this.improvingOnly = improvingOnly;
+            this.validOnly = validOnly;
+            this.overfull = validOnly ? overfullRoutes() : 0;
+            this.binInd0 = binInd0;
+            this.binInd1 = binInd1;
+            this.pairsLeft = numPairs;
+        }
+
+        @Override
+        protected Move<Double> advance() {
+            while (binInd0 < paths.size()) {
+                if (binInd1 >= paths.size()) {
+                    binInd0 ++;
+                    binInd1 = binInd0 + 1;
+                    continue;
+                }
+
+                // Forwards moves a customer from binInd0 to binInd1, backwards the reverse
+                int from = backwards ? binInd1 : binInd0;
+                int to = backwards ? binInd0 : binInd1;
+                if (pos < paths.get(from).length) {
+                    int fromPos = pos ++;
+                    // Rejected before anything is built, most relocates on tight instances overfill
+                    if (validOnly && !isFeasibleAfterRelocate(from, to, paths.get(from)[fromPos], overfull)) {
+                        continue;
+                    }
+                    if (problem.isGranular() && !isGranularRelocate(paths.get(from)[fromPos], to)) {
+                        continue;
+                    }
+                    // Exact, as screened relocates keep their tours
+                    if (improvingOnly && Moves.removalDelta(problem, paths.get(from), fromPos)
+                            + bestInsertion(paths.get(from)[fromPos], to).delta >= 0) {
+                        continue;
+                    }
+                    Metrics.count(Metrics.Counter.neighborsGenerated);
+                    return new Relocate(from, fromPos, to);
+                }
+
+                pos = 0;
+                if (backwards) {
+                    binInd1 ++;
+                    if (--pairsLeft == 0) {
+                        binInd0 = paths.size();
                     }
                 }
+                backwards = !backwards;
             }
-        };
+            return null;
+        }
+    }
+
+    private Insertion bestInsertion(int loc, int bin) {
+        int[] route = paths.get(bin);
+        Insertion cached = insertions[loc][bin];
+        if (cached != null && cached.route == route) {
+            return cached;
+        }
+        int pos = Moves.bestInsertionPos(problem, route, loc);
+        Insertion insertion = new Insertion(route, pos, Moves.insertionDelta(problem, route, pos, loc));
+        // Entries are immutable, so threads racing on one at worst compute it twice
+        insertions[loc][bin] = insertion;
+        return insertion;
+    }
+
+    private int overfullRoutes() {
+        int overfull = 0;
+        for (int load : loads) {
+            if (load > problem.vehicleCapacity) {
+                overfull ++;
+            }
+        }
+        return overfull;
+    }
+
+    /**
+     * Whether every route is within capacity once loc is moved from fromBin to
+     * toBin, given the number of routes over capacity now.
+     */
+    private boolean isFeasibleAfterRelocate(int fromBin, int toBin, int loc, int overfull) {
+        int capacity = problem.vehicleCapacity;
+        int demand = problem.demandOfCustomer[loc];
+        int overfullLeft = overfull
+                - (loads[fromBin] > capacity ? 1 : 0) - (loads[toBin] > capacity ? 1 : 0);
+        return overfullLeft == 0 && loads[fromBin] - demand <= capacity && loads[toBin] + demand <= capacity;
+    }
+
+    /**
+     * Granular relocates only move a customer into a route that holds one of its
+     * candidates, or into an empty route next to the depot.
+     */
+    private boolean isGranularRelocate(int loc, int toBin) {
+        if (paths.get(toBin).length == 0) {
+            return true;
+        }
+        for (int candidate : problem.candidatesOfCustomer[loc]) {
+            if (paths.routeOf(candidate) == toBin) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Move of the customer at fromPos of route fromBin to its cheapest position in
+     * route toBin.
+     *
+     * With lsScreenMoves, and both routes solved, the relocate keeps the two tours as
+     * they are after the removal and insertion: its value comes from the edges it
+     * changes, the same delta its screen uses. Otherwise evaluating it solves the two
+     * new routes. Either way any route of this state that is not solved yet is
+     * solved too, without building the neighbor, and the solved tours are kept for
+     * the neighbor in case the move is materialized. Built and applied relocates
+     * walk the tours they keep, so their costs never drift.
+     */
+    private class Relocate extends Move<Double> {
+        private final int fromBin;
+        private final int fromPos;
+        private final int toBin;
+
+        private Insertion insertion = null;
+
+        // Routes solved by getValue, in bin order, with null for skipped ones
+        private int[] solvedBins;
+        private TSPState[] solved;
+
+        // State before apply, for undo
+        private int[] fromBefore;
+        private int[] toBefore;
+        private double fromCostBefore;
+        private double toCostBefore;
+        private Optional<Double> valueBefore;
+
+        Relocate(int fromBin, int fromPos, int toBin) {
+            this.fromBin = fromBin;
+            this.fromPos = fromPos;
+            this.toBin = toBin;
+        }
+
+        private int[] newFrom() {
+            return Routes.remove(paths.get(fromBin), fromPos);
+        }
+
+        private int[] newTo() {
+            if (insertion == null) {
+                insertion = bestInsertion(paths.get(fromBin)[fromPos], toBin);
+            }
+            return Routes.insert(insertion.route, insertion.pos, paths.get(fromBin)[fromPos]);
+        }
+
+        private boolean keepsTours() {
+            return Settings.lsScreenMoves && !Double.isNaN(routeCosts[fromBin]) && !Double.isNaN(routeCosts[toBin]);
+        }
+
+        @Override
+        Double getValue(Optional<Double> best) {
+            Log.log(4, "getValue VRP");
+            boolean keepsTours = keepsTours();
+            double fromCost = Double.NaN;
+            double toCost = Double.NaN;
+            double known = knownCost(fromBin, toBin);
+            if (keepsTours) {
+                newTo();
+                fromCost = routeCosts[fromBin] + Moves.removalDelta(problem, paths.get(fromBin), fromPos);
+                toCost = routeCosts[toBin] + insertion.delta;
+                known += fromCost + toCost;
+            }
+
+            solvedBins = keepsTours ? unsolvedBins(-1, -1) : unsolvedBins(fromBin, toBin);
+            int[][] routes = new int[solvedBins.length][];
+            for (int k = 0; k < solvedBins.length; k ++) {
+                int bin = solvedBins[k];
+                routes[k] = bin == fromBin ? newFrom() : bin == toBin ? newTo() : paths.get(bin);
+            }
+
+            solved = solveRoutes(solvedBins, routes, known, best);
+
+            // Summed in bin order, as knownCost would for the neighbor
+            double value = 0;
+            int k = 0;
+            for (int bin = 0; bin < paths.size(); bin ++) {
+                if (keepsTours && (bin == fromBin || bin == toBin)) {
+                    value += bin == fromBin ? fromCost : toCost;
+                } else if (k < solvedBins.length && solvedBins[k] == bin) {
+                    if (solved[k] != null) {
+                        value += solved[k].getValueRemember();
+                    }
+                    k ++;
+                } else if (!Double.isNaN(routeCosts[bin])) {
+                    value += routeCosts[bin];
+                }
+            }
+            return value;
+        }
+
+        @Override
+        VRPState build() {
+            boolean keepsTours = keepsTours();
+            Routes newPaths = paths.copy();
+            newPaths.set(fromBin, newFrom());
+            newPaths.set(toBin, newTo());
+            int[] newLoads = loads.clone();
+            int demand = problem.demandOfCustomer[paths.get(fromBin)[fromPos]];
+            newLoads[fromBin] -= demand;
+            newLoads[toBin] += demand;
+
+            VRPState neighbor = new VRPState(VRPState.this, newPaths, newLoads, fromBin, toBin);
+            if (solved != null) {
+                for (int k = 0; k < solved.length; k ++) {
+                    if (solved[k] != null) {
+                        neighbor.setSolved(solvedBins[k], solved[k]);
+                    }
+                }
+            }
+            if (keepsTours) {
+                neighbor.setSolved(fromBin, new TSPState(problem, newPaths.get(fromBin)));
+                neighbor.setSolved(toBin, new TSPState(problem, newPaths.get(toBin)));
+            }
+            return neighbor;
+        }
+
+        @Override
+        void apply() {
+            fromBefore = paths.get(fromBin);
+            toBefore = paths.get(toBin);
+            fromCostBefore = routeCosts[fromBin];
+            toCostBefore = routeCosts[toBin];
+            valueBefore = getKnownValue();
+            boolean keepsTours = keepsTours();
+
+            int[] newFrom = newFrom();
+            int[] newTo = newTo();
+            paths.set(fromBin, newFrom);
+            paths.set(toBin, newTo);
+            int demand = problem.demandOfCustomer[fromBefore[fromPos]];
+            loads[fromBin] -= demand;
+            loads[toBin] += demand;
+            if (keepsTours) {
+                setSolved(fromBin, new TSPState(problem, newFrom));
+                setSolved(toBin, new TSPState(problem, newTo));
+            } else {
+                routeCosts[fromBin] = Double.NaN;
+                routeCosts[toBin] = Double.NaN;
+            }
+            setKnownValue(Optional.empty());
+        }
+
+        @Override
+        void undo() {
+            int demand = problem.demandOfCustomer[fromBefore[fromPos]];
+            loads[fromBin] += demand;
+            loads[toBin] -= demand;
+            paths.set(fromBin, fromBefore);
+            paths.set(toBin, toBefore);
+            routeCosts[fromBin] = fromCostBefore;
+            routeCosts[toBin] = toCostBefore;
+            setKnownValue(valueBefore);
+        }
+
+        @Override
+        boolean isValid() {
+            return isFeasibleAfterRelocate(fromBin, toBin, paths.get(fromBin)[fromPos], overfullRoutes());
+        }
     }
 
     @Override
@@ -109,17 +521,33 @@ public class VRPState extends AbstractLocalSearchState<Double> {
         return this.isFeasible();
     }
 
-    @Override AbstractLocalSearchState<Double> getRandom(double dist) {
+    @Override AbstractLocalSearchState<Double> getRandom(double dist, SplittableRandom rand) {
+        int trueDist = (int) Math.ceil(dist * problem.numCustomers);
+        Metrics.count(Metrics.Counter.perturbations);
+
+        if (Settings.perturbation == Settings.Perturbation.ruinRecreate) {
+            Routes newPaths = new RuinRecreate(problem, rand.split()).perturb(paths, trueDist);
+            // Routes the perturbation did not touch keep their arrays, and their costs
+            List<Integer> changedBins = new ArrayList<>();
+            int[] newLoads = loads.clone();
+            for (int bin = 0; bin < paths.size(); bin ++) {
+                if (newPaths.get(bin) != paths.get(bin)) {
+                    changedBins.add(bin);
+                    newLoads[bin] = loadOf(newPaths.get(bin));
+                }
+            }
+            return new VRPState(this, newPaths, newLoads,
+                    changedBins.stream().mapToInt(Integer::intValue).toArray());
+        }
+
         try {
             CPInstance cpInstance = CPInstance.getInstance(problem);
-            List<List<Integer>> bins = Utils.doubleClone(paths);
-
-            int trueDist = (int) Math.ceil(dist * problem.numCustomers);
+            Routes bins = paths.copy();
 
-            List<List<Integer>> nonEmptyBins = new ArrayList<>(bins);
-            for (int i = nonEmptyBins.size() - 1; i >= 0; i --) {
-                if (nonEmptyBins.get(i).isEmpty()) {
-                    nonEmptyBins.remove(i);
+            List<Integer> nonEmptyBins = new ArrayList<>();
+            for (int i = 0; i < bins.size(); i ++) {
+                if (bins.get(i).length > 0) {
+                    nonEmptyBins.add(i);
                 }
             }
 
@@ -127,41 +555,39 @@ public class VRPState extends AbstractLocalSearchState<Double> {
                 if (nonEmptyBins.isEmpty()) {
                     break;
                 }
-                int binInd = Settings.rand.nextInt(nonEmptyBins.size());
-                List<Integer> bin = nonEmptyBins.get(binInd);
-                int locInd = Settings.rand.nextInt(bin.size());
-                Integer remove = bin.get(locInd);
-                bin.remove(remove);
-                if (bin.isEmpty()) {
+                int binInd = rand.nextInt(nonEmptyBins.size());
+                int bin = nonEmptyBins.get(binInd);
+                int locInd = rand.nextInt(bins.get(bin).length);
+                bins.set(bin, Routes.remove(bins.get(bin), locInd));
+                if (bins.get(bin).length == 0) {
                     nonEmptyBins.remove(binInd);
                 }
             }
 
             assert this.isFeasible() : "getRandom should only be called on feasible states.";
 
-            System.out.println("Start VRP CP");
+            Log.log(2, "Start VRP CP");
 
             Solution solution = cpInstance.solveBin(bins).get();
 
-            System.out.println("End VRP CP");
+            Log.log(2, "End VRP CP");
             return new VRPState(problem, solution.getPaths());
         } catch (IloException e) {
-            e.printStackTrace();
+            Log.log(0, "CP perturbation failed, keeping the state: {}", e);
             return this;
         }
     }
 
     @Override
     void print() {
-        System.out.println("VRPState: " + this.getValueRemember());
-        for (List<Integer> path : paths) {
-            System.out.print(" ");
-            for (Integer loc : path) {
-                System.out.print(" " + loc);
+        StringBuilder text = new StringBuilder("VRPState: " + this.getValueRemember());
+        for (int bin = 0; bin < paths.size(); bin ++) {
+            text.append(System.lineSeparator()).append(" ");
+            for (int loc : paths.get(bin)) {
+                text.append(" " + loc);
             }
-            System.out.println();
         }
-        System.out.println();
+        Log.log(3, text.append(System.lineSeparator()).toString());
     }
 
     @Override